@@ -34,11 +34,17 @@
 package fr.paris.lutece.maven;
 
 import java.io.File;
+import java.nio.file.attribute.FileTime;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.Arrays;
 import java.util.Collection;
+import org.apache.maven.archiver.MavenArchiveConfiguration;
+import org.apache.maven.archiver.MavenArchiver;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.artifact.resolver.ArtifactCollector;
@@ -47,6 +53,9 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.archiver.AbstractArchiver;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.zip.AbstractZipArchiver;
 import org.codehaus.plexus.logging.LogEnabled;
 import org.codehaus.plexus.logging.Logger;
 
@@ -133,6 +142,7 @@ public abstract class AbstractLuteceMojo
     protected static final String EXCLUDE_PATTERN_UTILS = "**/fr/paris/lutece/**/utils/**";
     protected static final String EXCLUDE_PATTERN_UTIL = "**/fr/paris/lutece/**/util/**";
     protected static final String EXCLUDE_PATTERN_WEBINF_TEST = "**/WEB-INF/test/**";
+    protected static final String EXCLUDE_PATTERN_SQL_TRANSLATED = "WEB-INF/sql-translated/**";
 
     // The files to include from the classes directory
     protected static final String[] PACKAGE_CLASSES_INCLUDES = new String[] { INCLUDE_PATTERN_ALL };
@@ -188,11 +198,26 @@ public abstract class AbstractLuteceMojo
 
     // The path to the sql directory
     protected static final String WEB_INF_SQL_PATH = "WEB-INF/sql/";
+    // The path to the SQL files translated when a plugin is packaged
+    protected static final String WEB_INF_SQL_TRANSLATED_PATH = "WEB-INF/sql-translated/";
 
     protected static final String BUILD_CONFIG_PATH = "build-config/";
     protected static final String ANT_PATH = "ant/";
 
+    protected static final String WEB_INF_CLASSES_PATH = "WEB-INF/classes/";
+    protected static final String WEB_INF_LIB_PATH = "WEB-INF/lib/";
+    protected static final String WEB_INF_CONF_PATH = "WEB-INF/conf/";
+    protected static final String STAGING_DIRECTORY_SUFFIX = "-staging";
+    protected static final String LAYERS_DIRECTORY_SUFFIX = "-layers";
+    // the prefix of the SQL files paths in the classpath
+    protected static final String SQL_PATH_PREFIX = "sql/";
     protected static final String WEB_INF_CLASSES_SQL_PATH = "WEB-INF/classes/sql/";
+    protected static final String SQL_WORK_DIRECTORY_SUFFIX = "-sql";
+    protected static final String SQL_STATE_FILE = "state.properties";
+    protected static final String LIQUIBASE_INDEX_FILE = "liquibase-index.properties";
+    protected static final String SQL_CHANGESETS_FILE = "sql-changesets.idx";
+    protected static final String SQL_SCHEMA_REPORT_FILE = "sql-schema-report.txt";
+    protected static final String FINGERPRINT_EXTENSION = ".fingerprint";
     protected static final String META_INF_DIRECTORY = "WEB-INF/classes/META-INF/";
     protected static final String WEB_INF_DB_PROPERTIES_PATH = "WEB-INF/conf/db.properties";
     protected static final String WEB_INF_BUILD_PROPERTIES_PATH = "WEB-INF/sql/build.properties";
@@ -286,6 +311,57 @@ public abstract class AbstractLuteceMojo
             readonly = true)
     protected List<MavenProject> reactorProjects;
 
+    /**
+     * The maximum number of archives built at the same time (the vendor WARs
+     * for instance), the number of processors when 0. The entries of each
+     * archive are already compressed concurrently by plexus-archiver.
+     */
+    @Parameter(
+    		property = "archiveThreads",
+    		defaultValue = "0" )
+    protected int archiveThreads;
+
+    /**
+     * Whether the jars, wars and zips added to an archive are compressed again.
+     * When false (default), they are stored as they are : they are already
+     * compressed, deflating them again costs time for no size gain.
+     */
+    @Parameter(
+    		property = "recompressAddedZips",
+    		defaultValue = "false" )
+    protected boolean recompressAddedZips;
+
+    /**
+     * The timestamp of the entries of the archives, for reproducible builds
+     * (see project.build.outputTimestamp). It is also used instead of the
+     * current date in the timestamped archive names.
+     */
+    @Parameter(
+    		defaultValue = "${project.build.outputTimestamp}" )
+    protected String outputTimestamp;
+
+    /**
+     * Whether the war, site-assembly and package goals skip building their
+     * archives when the inputs (files, resolved dependencies, archive and goal
+     * configuration) did not change since the previous build and the archives
+     * were not modified. Off by default : inputs outside the fingerprint, such
+     * as a plugin configuration changed in a parent POM, would keep stale archives.
+     */
+    @Parameter(
+    		property = "skipUnchangedArchives",
+    		defaultValue = "false" )
+    protected boolean skipUnchangedArchives;
+
+    /**
+     * Whether the package goal stores a Jandex index of the classes in the jar,
+     * in META-INF/jandex.idx, and the war, site-assembly and exploded goals
+     * write an index of each jar of WEB-INF/lib without one, in WEB-INF/jandex.
+     */
+    @Parameter(
+    		property = "jandex",
+    		defaultValue = "false" )
+    protected boolean jandex;
+
     /**
     * Artifact collector, needed to resolve dependencies.
     *
@@ -332,6 +408,80 @@ public abstract class AbstractLuteceMojo
                                           String.join( " or ", allowedPackagings ) + " project." );
     }
 
+    /**
+     * Returns the maximum number of archives built at the same time
+     * @return the archiveThreads parameter, or the number of processors when it is not set
+     */
+    protected int getArchiveThreads(  )
+    {
+        return ( archiveThreads > 0 ) ? archiveThreads : Runtime.getRuntime(  ).availableProcessors(  );
+    }
+
+    /**
+     * Applies the archive options of the goal to an archive configuration
+     * @param archive the configuration of an archive built with MavenArchiver
+     * @return the configuration
+     */
+    protected MavenArchiveConfiguration configureArchive( MavenArchiveConfiguration archive )
+    {
+        archive.setRecompressAddedZips( recompressAddedZips );
+
+        return archive;
+    }
+
+    /**
+     * Applies the archive options of the goal to an archiver used directly
+     * @param archiver the archiver
+     */
+    protected void configureArchiver( Archiver archiver )
+    {
+        if ( archiver instanceof AbstractZipArchiver )
+        {
+            ( (AbstractZipArchiver) archiver ).setRecompressAddedZips( recompressAddedZips );
+        }
+
+        if ( archiver instanceof AbstractArchiver )
+        {
+            MavenArchiver.parseBuildOutputTimestamp( outputTimestamp )
+                         .ifPresent( instant -> ( (AbstractArchiver) archiver ).configureReproducibleBuild( FileTime.from( instant ) ) );
+        }
+    }
+
+    /**
+     * Applies the archive options of the goal to a MavenArchiver
+     * @param archiver the MavenArchiver
+     * @return the MavenArchiver
+     */
+    protected MavenArchiver configureArchiver( MavenArchiver archiver )
+    {
+        archiver.configureReproducibleBuild( outputTimestamp );
+
+        return archiver;
+    }
+
+    /**
+     * Returns the date of the build, used in the timestamped archive names
+     * @return the outputTimestamp when it is set, the current date otherwise
+     */
+    protected Date getBuildDate(  )
+    {
+        return MavenArchiver.parseBuildOutputTimestamp( outputTimestamp ).map( Date::from ).orElseGet( Date::new );
+    }
+
+    /**
+     * Formats the date of the build in UTC, so that the same outputTimestamp
+     * gives the same archive names whatever the time zone of the machine
+     * @param strPattern the date pattern
+     * @return the formatted date of the build
+     */
+    protected String formatBuildDate( String strPattern )
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat( strPattern );
+        dateFormat.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+
+        return dateFormat.format( getBuildDate(  ) );
+    }
+
     public void logBanner() {
         getLog().info(" __        __    __   ________  ________  ________  ________");
         getLog().info("   |         |     |          |         |         |         |");
@@ -35,19 +35,30 @@ package fr.paris.lutece.maven;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
+import org.apache.maven.archiver.MavenArchiveConfiguration;
+import org.apache.maven.archiver.MavenArchiver;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.handler.manager.ArtifactHandlerManager;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
@@ -58,11 +69,21 @@ import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.jar.JarArchiver;
+import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 
+import fr.paris.lutece.maven.utils.sql.PluginSqlScripts;
+import fr.paris.lutece.maven.utils.sql.SqlBuildState;
+import fr.paris.lutece.maven.utils.sql.SqlChangeSetChecksums;
+import fr.paris.lutece.maven.utils.sql.SqlIndexService;
+import fr.paris.lutece.maven.utils.sql.SqlInsertBatcher;
+import fr.paris.lutece.maven.utils.sql.SqlSchemaAdvisor;
+import fr.paris.lutece.maven.utils.sql.SqlTranslationManifest;
 import fr.paris.lutece.utils.sql.SqlRegexpHelper;
 import java.util.function.Function;
 
@@ -147,6 +168,80 @@ public abstract class AbstractLuteceWebappMojo
      */
     @Parameter(property = "targetDatabaseVendor", defaultValue = DATABASE_VENDOR_NONE)
     protected String targetDatabaseVendor;
+
+    /**
+     * When true, the SQL files of WEB-INF/classes/sql are only written again
+     * if their source, the target database vendor or build.properties changed
+     * since the previous run, and the outputs of deleted sources are removed.
+     * The liquibase-sql goal also skips the files already in Liquibase format
+     * which did not change since its previous run.
+     */
+    @Parameter(property = "incrementalSql", defaultValue = "false")
+    protected boolean incrementalSql;
+
+    /**
+     * The database vendors for which translated SQL files are also generated,
+     * in the same pass, into <code>target/&lt;webapp&gt;-sql/&lt;vendor&gt;</code>.
+     * When set, the war and site-assembly goals also build one WAR per vendor,
+     * classified with the vendor name.
+     */
+    @Parameter(property = "targetDatabaseVendors")
+    protected List<String> targetDatabaseVendors;
+
+    /**
+     * When greater than 1, consecutive single-row INSERT statements of the SQL
+     * files translated for the targetDatabaseVendors are merged into multi-row
+     * INSERT statements of at most this number of rows. Oracle files are never
+     * merged, and WEB-INF/classes/sql of the main webapp is left as is.
+     * Merging changes the Liquibase checksums of the changesets of the vendor
+     * WARs : it should not be enabled or changed for databases already
+     * initialized from WARs built with another value.
+     * The vendor neutral sources in src/sql are never merged.
+     */
+    @Parameter(property = "sqlInsertBatchSize", defaultValue = "0")
+    protected int sqlInsertBatchSize;
+
+    /**
+     * When true, the schema defined by the SQL scripts is analyzed. The
+     * analysis flags foreign keys and id_* columns without an index, tables
+     * without a primary key and MyISAM tables, into sql-schema-report.txt.
+     * It reads all the create and upgrade scripts, so it is off by default.
+     */
+    @Parameter(property = "sqlAdvisor", defaultValue = "false")
+    protected boolean sqlAdvisor;
+
+    /**
+     * When true, the build fails if the analysis of the schema has findings.
+     */
+    @Parameter(property = "sqlAdvisor.failOnFindings", defaultValue = "false")
+    protected boolean sqlAdvisorFailOnFindings;
+
+    /**
+     * When true, the war and site-assembly goals write the WARs straight from
+     * the webapp artifacts of the dependencies and from the project directories,
+     * instead of exploding the webapp first. Only the SQL and configuration
+     * files are staged, in target/&lt;finalName&gt;-staging, to be processed.
+     * Multi-module builds always explode the webapp.
+     */
+    @Parameter(property = "directWar", defaultValue = "false")
+    protected boolean directWar;
+
+    /**
+     * When true, the main WAR is also written as layers for container images,
+     * in target/&lt;finalName&gt;-layers : the third-party jars, lutece-core,
+     * the plugins and the application, each in its own directory, listed in
+     * layers.idx from the most stable to the most specific.
+     */
+    @Parameter(property = "layers", defaultValue = "false")
+    protected boolean layers;
+
+    /**
+     * When true, WEB-INF/classpath.idx indexes the packages and resource
+     * directories of the jars of WEB-INF/lib, in the jar index format, and the
+     * packages split across several jars are reported.
+     */
+    @Parameter(property = "classpathIndex", defaultValue = "false")
+    protected boolean classpathIndex;
    
     /**
     * The outdatedCheckPath
@@ -191,6 +286,288 @@ public abstract class AbstractLuteceWebappMojo
     @Inject
     protected ArtifactMetadataSource metadataSource;
 
+    /**
+     * To look up Archiver/UnArchiver implementations
+     */
+    @Inject
+    protected ArchiverManager archiverManager;
+
+    /**
+     * The SQL translation helpers, by vendor and build.properties file
+     */
+    private final Map<String, SqlRegexpHelper> sqlHelpers = new HashMap<>();
+
+    /**
+     * The sources of the WARs in direct mode, by decreasing precedence, null when the webapp is exploded
+     */
+    private List<WebappSource> directWebappSources;
+
+    /**
+     * Prepares the webapp to archive : explodes it, or in direct mode only stages
+     * its SQL and configuration files and collects its sources.
+     *
+     * @param explodedDirectory
+     *            the directory where to explode the webapp.
+     * @return the directory to archive, with the sources collected in direct mode
+     * @throws MojoExecutionException
+     *             if an error occurs while preparing the webapp.
+     */
+    protected File prepareWebapp( File explodedDirectory )
+                          throws MojoExecutionException
+    {
+        if ( directWar && ( reactorProjects.size(  ) > 1 ) )
+        {
+            getLog(  ).warn( "directWar is not supported in multi-module builds, the webapp is exploded" );
+        }
+        else if ( directWar )
+        {
+            File stagingDirectory = new File( outputDirectory, project.getBuild(  ).getFinalName(  ) + STAGING_DIRECTORY_SUFFIX );
+            stageWebapp( stagingDirectory );
+
+            return stagingDirectory;
+        }
+
+        explodeWebapp( explodedDirectory );
+        explodeConfigurationFiles( explodedDirectory );
+
+        return explodedDirectory;
+    }
+
+    /**
+     * Stages the SQL and configuration files of the webapp, with the same
+     * precedence as when it is exploded, and collects the other sources of the WARs.
+     *
+     * @param stagingDirectory
+     *            the staging directory, emptied first.
+     * @throws MojoExecutionException
+     *             if an error occurs while staging the files.
+     */
+    private void stageWebapp( File stagingDirectory )
+                      throws MojoExecutionException
+    {
+        getLog(  ).info( "Staging SQL and configuration files in " + stagingDirectory + "..." );
+
+        try
+        {
+            org.codehaus.plexus.util.FileUtils.deleteDirectory( stagingDirectory );
+            stagingDirectory.mkdirs(  );
+
+            List<Artifact> listLuteceArtifacts = new ArrayList<>(  );
+            Artifact coreArtifact = getCoreArtifact(  );
+
+            if ( coreArtifact != null )
+            {
+                listLuteceArtifacts.add( coreArtifact );
+            }
+
+            listLuteceArtifacts.addAll( filterArtifacts( new TypeArtifactFilter( LUTECE_PLUGIN_TYPE ) ) );
+            listLuteceArtifacts.addAll( filterArtifacts( new TypeArtifactFilter( LUTECE_SITE_TYPE ) ) );
+
+            // the sources are archived with the duplicates skipped : the first source of a file wins
+            List<WebappSource> listSources = new ArrayList<>(  );
+            listSources.add( new WebappSource( stagingDirectory, "" ) );
+            listSources.add( new WebappSource( classesDirectory, WEB_INF_CLASSES_PATH ) );
+            listSources.add( new WebappSource( siteDirectory, WEB_INF_DOC_XML_PATH ) );
+            listSources.add( new WebappSource( webappSourceDirectory, "" ) );
+
+            for ( Artifact artifact : filterArtifacts( THIRD_PARTY_JAR_FILTER ) )
+            {
+                listSources.add( new WebappSource( artifact.getFile(  ), WEB_INF_LIB_PATH ) );
+            }
+
+            // the artifacts exploded last have the precedence
+            List<File> listWebappZips = new ArrayList<>(  );
+            List<WebappSource> listArtifactSources = new ArrayList<>(  );
+
+            for ( Artifact artifact : listLuteceArtifacts )
+            {
+                File webappZip = resolveWebappArtifact( artifact );
+                listWebappZips.add( webappZip );
+                listArtifactSources.add( 0, new WebappSource( webappZip, null ) );
+                listArtifactSources.add( 0, new WebappSource( artifact.getFile(  ), WEB_INF_LIB_PATH ) );
+            }
+
+            listSources.addAll( listArtifactSources );
+
+            // the files processed by the build are staged, in the order they are exploded
+            for ( File webappZip : listWebappZips )
+            {
+                unArchiver.setSourceFile( webappZip );
+                unArchiver.setDestDirectory( stagingDirectory );
+                unArchiver.extract( WEB_INF_SQL_PATH, stagingDirectory );
+                unArchiver.extract( WEB_INF_SQL_TRANSLATED_PATH, stagingDirectory );
+                unArchiver.extract( WEB_INF_CONF_PATH, stagingDirectory );
+            }
+
+            copyBuildConfig( stagingDirectory );
+
+            for ( String strPath : new String[] { WEB_INF_SQL_PATH, WEB_INF_CONF_PATH } )
+            {
+                File webappSourceFiles = new File( webappSourceDirectory, strPath );
+
+                if ( webappSourceFiles.exists(  ) )
+                {
+                    FileUtils.copyDirectoryStructure( webappSourceFiles, new File( stagingDirectory, strPath ) );
+                }
+            }
+
+            if ( sqlDirectory.exists(  ) )
+            {
+                FileUtils.copyDirectoryStructure( sqlDirectory, new File( stagingDirectory, WEB_INF_SQL_PATH ) );
+            }
+
+            FileUtils.setNbFileCopy( 0 );
+            explodeConfigurationFiles( stagingDirectory );
+            directWebappSources = listSources;
+        } catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error while staging the webapp files", e );
+        }
+    }
+
+    /**
+     * Writes the index of the jars of the webapp in WEB-INF/classpath.idx, if
+     * enabled. In direct mode, the jars are those of the sources of the WARs
+     * and the index is written in the staging directory.
+     *
+     * @param webappDir the exploded webapp, or the staging directory in direct mode
+     * @throws MojoExecutionException if an error occurs while reading the jars
+     */
+    protected void writeClasspathIndex( File webappDir )
+                          throws MojoExecutionException
+    {
+        if ( !classpathIndex )
+        {
+            return;
+        }
+
+        try
+        {
+            ClasspathIndex index = ClasspathIndex.build( getWebappJars( webappDir ), getArchiveThreads(  ) );
+            index.store( new File( webappDir, ClasspathIndex.CLASSPATH_INDEX_PATH ) );
+            getLog(  ).info( "Indexed the classpath of " + index.getJarCount(  ) + " jars" );
+
+            for ( Map.Entry<String, Set<String>> entry : index.getSplitPackages(  ).entrySet(  ) )
+            {
+                getLog(  ).warn( "Package " + entry.getKey(  ) + " is split across " + entry.getValue(  ) );
+            }
+        } catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Error while indexing the jars of " + webappDir, e );
+        }
+    }
+
+    /**
+     * Writes the Jandex indexes of the jars of the webapp which have none, in
+     * WEB-INF/jandex, if enabled. In direct mode, the indexes are written in
+     * the staging directory.
+     *
+     * @param webappDir the exploded webapp, or the staging directory in direct mode
+     * @throws MojoExecutionException if an error occurs while writing the indexes
+     */
+    protected void writeJandexIndexes( File webappDir )
+                          throws MojoExecutionException
+    {
+        if ( !jandex )
+        {
+            return;
+        }
+
+        try
+        {
+            List<File> listJars = getWebappJars( webappDir );
+
+            for ( String strError : JandexIndexes.writeWebappIndexes( listJars, webappDir, getArchiveThreads(  ) ) )
+            {
+                getLog(  ).warn( "Could not index " + strError );
+            }
+
+            getLog(  ).info( "Indexed the annotations of " + listJars.size(  ) + " jars" );
+        } catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Error while indexing the annotations of the jars of " + webappDir, e );
+        }
+    }
+
+    /**
+     * Returns the jars of the webapp : in direct mode the jars of the sources of the WARs
+     *
+     * @param webappDir the exploded webapp, or the staging directory in direct mode
+     * @return the jars, with distinct names
+     */
+    private List<File> getWebappJars( File webappDir )
+    {
+        // the first jar of a name wins, as when the sources are archived
+        Map<String, File> mapJars = new LinkedHashMap<>(  );
+
+        if ( directWebappSources != null )
+        {
+            for ( WebappSource source : directWebappSources )
+            {
+                if ( WEB_INF_LIB_PATH.equals( source.prefix ) && source.file.isFile(  ) )
+                {
+                    mapJars.putIfAbsent( source.file.getName(  ), source.file );
+                }
+                else if ( "".equals( source.prefix ) )
+                {
+                    addLibraryJars( new File( source.file, WEB_INF_LIB_PATH ), mapJars );
+                }
+            }
+        }
+        else
+        {
+            addLibraryJars( new File( webappDir, WEB_INF_LIB_PATH ), mapJars );
+        }
+
+        return new ArrayList<>( mapJars.values(  ) );
+    }
+
+    /**
+     * Adds the jars of a library directory
+     *
+     * @param libDirectory the directory
+     * @param mapJars the jars by name
+     */
+    private static void addLibraryJars( File libDirectory, Map<String, File> mapJars )
+    {
+        File[] jars = libDirectory.listFiles( ( dir, name ) -> name.endsWith( ".jar" ) );
+
+        if ( jars != null )
+        {
+            Arrays.sort( jars );
+
+            for ( File jar : jars )
+            {
+                mapJars.putIfAbsent( jar.getName(  ), jar );
+            }
+        }
+    }
+
+    /**
+     * Adds the webapp to a WAR archiver : the exploded directory, or in direct mode all the sources of the webapp.
+     *
+     * @param archiver the archiver
+     * @param webappDir the exploded webapp, or the staging directory in direct mode
+     * @param includes the files to include
+     * @param excludes the files to exclude
+     */
+    protected void addWebappToArchive( Archiver archiver, File webappDir, String[] includes, String[] excludes )
+    {
+        if ( directWebappSources == null )
+        {
+            archiver.addDirectory( webappDir, includes, excludes );
+
+            return;
+        }
+
+        archiver.setDuplicateBehavior( Archiver.DUPLICATES_SKIP );
+
+        for ( WebappSource source : directWebappSources )
+        {
+            source.addTo( archiver, includes, excludes );
+        }
+    }
+
     /**
      * Creates an exploded webapp structure from the current project.
      *
@@ -427,6 +804,25 @@ public abstract class AbstractLuteceWebappMojo
      */
     protected void explodeCore( File webappDir )
                       throws MojoExecutionException
+    {
+        Artifact coreArtifact = getCoreArtifact(  );
+
+        if ( coreArtifact != null )
+        {
+            addToExplodedWebapp( coreArtifact, webappDir );
+        }
+    }
+
+    /**
+     * Returns the lutece-core dependency.
+     *
+     * @return the lutece-core artifact, null if the project is lutece-core or is built without it.
+     *
+     * @throws MojoExecutionException
+     *             if there is more than one lutece-core dependency.
+     */
+    protected Artifact getCoreArtifact(  )
+                      throws MojoExecutionException
     {
         // Get all the lutece-core artifacts from the project
         Set cores = filterArtifacts( new TypeArtifactFilter( LUTECE_CORE_TYPE ) );
@@ -434,12 +830,12 @@ public abstract class AbstractLuteceWebappMojo
         // There must be exactly one
         if ( LUTECE_CORE_TYPE.equals( project.getArtifactId(  ) ) )
         {
-            return;
+            return null;
         }
         else if (( cores == null ) || cores.isEmpty(  ) )
         {
         	// Case where the project is built without lutece-core
-        	return;
+        	return null;
         }
         else if (  cores.size(  ) > 1  )
         { 	
@@ -448,9 +844,7 @@ public abstract class AbstractLuteceWebappMojo
         }
 
         // Now we know the Set has exactly one element
-        Artifact coreArtifact = (Artifact) cores.iterator(  ).next(  );
-
-        addToExplodedWebapp( coreArtifact, webappDir );
+        return (Artifact) cores.iterator(  ).next(  );
     }
 
     /**
@@ -516,20 +910,7 @@ public abstract class AbstractLuteceWebappMojo
         File webinfLib = new File( webappDir, "WEB-INF/lib" );
         webinfLib.mkdirs(  );
 
-        // Filter jar artifacts in scope 'compile' or 'runtime'
-        ArtifactFilter thirdPartyFilter =
-            new ArtifactFilter(  )
-            {
-                @Override
-                public boolean include( Artifact artifact )
-                {
-                    return ( "jar".equals( artifact.getType(  ) ) &&
-                           (
-                               Artifact.SCOPE_RUNTIME.equals( artifact.getScope(  ) ) ||
-                               Artifact.SCOPE_COMPILE.equals( artifact.getScope(  ) )
-                            ) );
-                }
-            };
+        ArtifactFilter thirdPartyFilter = THIRD_PARTY_JAR_FILTER;
 
         // if multi project
         if ( ( reactorProjects.size(  ) > 1 ) && ! project.isExecutionRoot(  ) )
@@ -592,6 +973,34 @@ public abstract class AbstractLuteceWebappMojo
                                               webinfJar.getAbsolutePath(  ), e );
         }
 
+        File webappZip = resolveWebappArtifact( luteceArtifact );
+
+        // Unzip the webapp artifact to the webapp directory
+        try
+        {
+            unArchiver.setSourceFile( webappZip );
+            unArchiver.setDestDirectory( webappDir );
+            unArchiver.extract(  );
+        } catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Error while unpacking file " +
+                                              webappZip.getAbsolutePath(  ), e );
+        }
+    }
+
+    /**
+     * Resolves the webapp artifact attached to a Lutece artifact.
+     *
+     * @param luteceArtifact
+     *            the Lutece artifact.
+     * @return the webapp zip file.
+     *
+     * @throws MojoExecutionException
+     *             if an error occurs while resolving.
+     */
+    protected File resolveWebappArtifact( Artifact luteceArtifact )
+                                throws MojoExecutionException
+    {
         // Every Lutece artifact has an attached webapp artifact
         Artifact webappArtifact =
             artifactFactory.createArtifactWithClassifier( luteceArtifact.getGroupId(  ),
@@ -609,17 +1018,7 @@ public abstract class AbstractLuteceWebappMojo
             throw new MojoExecutionException( "Error while resolving artifact " + webappArtifact, e );
         }
 
-        // Unzip the webapp artifact to the webapp directory
-        try
-        {
-            unArchiver.setSourceFile( webappArtifact.getFile(  ) );
-            unArchiver.setDestDirectory( webappDir );
-            unArchiver.extract(  );
-        } catch ( Exception e )
-        {
-            throw new MojoExecutionException( "Error while unpacking file " +
-                                              webappArtifact.getFile(  ).getAbsolutePath(  ), e );
-        }
+        return webappArtifact.getFile(  );
     }
 
     /**
@@ -756,6 +1155,7 @@ public abstract class AbstractLuteceWebappMojo
      */
     protected void explodeSqlFiles(File explodedDirectory, String targetDatabaseVendor) throws MojoExecutionException
     {
+        int nSchemaFindings = 0;
         // duplicate SQL files in target WAR classpath for liquibase
         try
         {
@@ -770,27 +1170,123 @@ public abstract class AbstractLuteceWebappMojo
             if (buildPropertiesOverride != null)
                 buildProperties = new File(buildPropertiesOverride);
             Function<String, String> linefilter = null;
+            String dbVendor = DATABASE_VENDOR_NONE;
             if (targetDatabaseVendor != null && !DATABASE_VENDOR_NONE.equals(targetDatabaseVendor))
             {
-                String dbVendor = null;
                 if (DATABASE_VENDOR_AUTO.equals(targetDatabaseVendor))
                     dbVendor = SqlRegexpHelper.findDbName(dbProperties);
                 else if (DATABASE_VENDORS.contains(targetDatabaseVendor))
                     dbVendor = targetDatabaseVendor;
                 else
                     throw new IllegalArgumentException("Unknown targetDatabaseVendor : '" + targetDatabaseVendor + "'");
-                SqlRegexpHelper sqlHelper = new SqlRegexpHelper(buildProperties, dbVendor);
+                SqlRegexpHelper sqlHelper = getSqlHelper(buildProperties, dbVendor);
                 linefilter = sqlHelper::filter;
                 getLog().info("Processing SQL files with target " + dbVendor);
             } 
             getLog().info("Copying SQL files into " + WEB_INF_CLASSES_SQL_PATH);
+            // variants for the additional vendors are written in the same read of each source
+            Map<File, Function<String, String>> vendorSqlDirectories = new LinkedHashMap<>();
+            for (String strVendor : getTargetDatabaseVendors())
+            {
+                getLog().info("Processing SQL files with additional target " + strVendor + " into " + getVendorSqlDirectory(explodedDirectory, strVendor));
+                vendorSqlDirectories.put(getVendorSqlDirectory(explodedDirectory, strVendor), getSqlHelper(buildProperties, strVendor)::filter);
+            }
             boolean needRuntimeBuildProperties = linefilter == null;// no filter here => we have to do it at run-time
+            // every current liquibase file is listed for the index, even when the incremental filter skips it
+            List<String> listLiquibaseFiles = new ArrayList<>();
+            Function<File, Boolean> fileFilter = f -> {
+                if (f.getName().equals("build.properties"))
+                    return needRuntimeBuildProperties;
+                boolean bLiquibaseFile = f.getName().toLowerCase().endsWith(LiquiBaseSqlMojo.SQL_EXT) && f.length() > 0 &&  LiquiBaseSqlMojo.isFileManagedByLiquibase(f,lq_sqlSourceDir.getAbsolutePath()) && LiquiBaseSqlMojo.isTaggedWithLiquibase(f, listLiquibaseFileErrors,lq_sqlSourceDir.getAbsolutePath());
+                if (bLiquibaseFile)
+                    listLiquibaseFiles.add(SQL_PATH_PREFIX + getSqlRelativePath(lq_sqlSourceDir, f));
+                return bLiquibaseFile;
+            };
+            SqlBuildState sqlState = null;
+            if (incrementalSql)
+            {
+                // only files whose source changed since the previous run pass the filter
+                String strVendorKey = vendorSqlDirectories.isEmpty() ? dbVendor : dbVendor + "+" + String.join(",", getTargetDatabaseVendors());
+                if (sqlInsertBatchSize > 1)
+                    strVendorKey += "@" + sqlInsertBatchSize;
+                sqlState = loadSqlBuildState(explodedDirectory, strVendorKey, buildProperties);
+                final SqlBuildState state = sqlState;
+                final Function<File, Boolean> copyFilter = fileFilter;
+                fileFilter = f -> {
+                    if (!copyFilter.apply(f))
+                        return false;
+                    // the file is written again if any of its outputs is missing
+                    String strRelativePath = getSqlRelativePath(lq_sqlSourceDir, f);
+                    List<File> listTargets = new ArrayList<>();
+                    listTargets.add(new File(lq_sqlTargetDir, strRelativePath));
+                    for (File vendorSqlDirectory : vendorSqlDirectories.keySet())
+                        listTargets.add(new File(vendorSqlDirectory, strRelativePath));
+                    return state.needsUpdate(strRelativePath, f, listTargets.toArray(new File[0]));
+                };
+            }
+            Set<String> setCopiedFiles = new HashSet<>();
+            final Function<File, Boolean> indexFilter = fileFilter;
+            fileFilter = f -> {
+                boolean bCopy = indexFilter.apply(f);
+                if (bCopy)
+                    setCopiedFiles.add(SQL_PATH_PREFIX + getSqlRelativePath(lq_sqlSourceDir, f));
+                return bCopy;
+            };
+            // the files translated when the plugins were packaged are copied instead of translated again
+            File sqlTranslatedDir = new File(explodedDirectory, WEB_INF_SQL_TRANSLATED_PATH);
+            String strMainVendor = linefilter == null ? null : dbVendor;
+            Set<String> setTranslatedFiles = new HashSet<>();
+            if (sqlTranslatedDir.isDirectory() && buildProperties.exists() && (strMainVendor != null || !vendorSqlDirectories.isEmpty()))
+            {
+                Map<String, SqlTranslationManifest> translations = SqlTranslationManifest.loadAll(sqlTranslatedDir, SqlBuildState.hash(buildProperties.toPath()));
+                final Function<File, Boolean> translationFilter = fileFilter;
+                fileFilter = f -> {
+                    if (!translationFilter.apply(f))
+                        return false;
+                    String strRelativePath = getSqlRelativePath(lq_sqlSourceDir, f);
+                    if (!copyTranslatedSqlFile(f, strRelativePath, translations.get(strRelativePath), sqlTranslatedDir, lq_sqlTargetDir, strMainVendor, explodedDirectory))
+                        return true;
+                    setTranslatedFiles.add(strRelativePath);
+                    return false;
+                };
+            }
             // we do not use copyDirectoryStructure since we have specific needs
-            FileUtils.copyDirectoryWithFilter(lq_sqlSourceDir, lq_sqlTargetDir,
-                    f -> (f.getName().equals("build.properties") && needRuntimeBuildProperties)
-                            || (f.getName().toLowerCase().endsWith(LiquiBaseSqlMojo.SQL_EXT) && f.length() > 0 &&  LiquiBaseSqlMojo.isFileManagedByLiquibase(f,lq_sqlSourceDir.getAbsolutePath()) && LiquiBaseSqlMojo.isTaggedWithLiquibase(f, listLiquibaseFileErrors,lq_sqlSourceDir.getAbsolutePath())),
-                    linefilter);
+            if (vendorSqlDirectories.isEmpty())
+            {
+                FileUtils.copyDirectoryWithFilter(lq_sqlSourceDir, lq_sqlTargetDir, fileFilter, linefilter);
+            }
+            else
+            {
+                copySqlFilesWithVendors(lq_sqlSourceDir, lq_sqlTargetDir, fileFilter, linefilter, vendorSqlDirectories);
+            }
+
+            if (!setTranslatedFiles.isEmpty())
+            {
+                getLog().info(setTranslatedFiles.size() + " SQL files copied from the translations made when packaging the plugins");
+            }
 
+            if (sqlState != null)
+            {
+                for (String strStalePath : sqlState.removeStalePaths())
+                {
+                    getLog().info("Removing " + WEB_INF_CLASSES_SQL_PATH + strStalePath + " whose source no longer exists");
+                    Files.deleteIfExists(new File(lq_sqlTargetDir, strStalePath).toPath());
+                    for (File vendorSqlDirectory : vendorSqlDirectories.keySet())
+                    {
+                        Files.deleteIfExists(new File(vendorSqlDirectory, strStalePath).toPath());
+                    }
+                }
+                sqlState.store();
+                getLog().info(sqlState.getUpToDateCount() + " SQL files already up to date in " + WEB_INF_CLASSES_SQL_PATH);
+            }
+
+            if (sqlInsertBatchSize > 1)
+            {
+                // WEB-INF/classes/sql is left alone : the files translated at run-time may target Oracle,
+                // and merging would change the checksums of the changesets already applied from the main WAR
+                for (String strVendor : getTargetDatabaseVendors())
+                    batchSqlInserts(getVendorSqlDirectory(explodedDirectory, strVendor), setCopiedFiles, strVendor);
+            }
 
 
             if (!listLiquibaseFileErrors.isEmpty())
@@ -803,6 +1299,10 @@ public abstract class AbstractLuteceWebappMojo
             }
 
             generateLiquibaseState(listLiquibaseFileErrors, explodedDirectory);
+            generateLiquibaseIndex(listLiquibaseFiles, explodedDirectory);
+            generateSqlChangeSetIndex(listLiquibaseFiles, setCopiedFiles, explodedDirectory, linefilter == null ? null : dbVendor);
+            if (sqlAdvisor)
+                nSchemaFindings = adviseSqlSchema(lq_sqlSourceDir, new File(getSqlWorkDirectory(explodedDirectory), SQL_SCHEMA_REPORT_FILE), project.getArtifactId());
 
             
 
@@ -812,10 +1312,462 @@ public abstract class AbstractLuteceWebappMojo
             // exception's message will be clear enough.
             throw new MojoExecutionException("Error while copying resources", e);
         }
+        if (nSchemaFindings > 0 && sqlAdvisorFailOnFindings)
+        {
+            throw new MojoExecutionException(nSchemaFindings + " issues found in the SQL schema, see " + SQL_SCHEMA_REPORT_FILE);
+        }
+
+    }
+
+
+    /**
+     * Returns the directory holding the SQL build data of an exploded webapp
+     * (kept outside of the webapp so that it is never packaged)
+     * @param explodedDirectory the exploded webapp directory
+     * @return the SQL work directory
+     */
+    protected File getSqlWorkDirectory(File explodedDirectory)
+    {
+        return new File(explodedDirectory.getParentFile(), explodedDirectory.getName() + SQL_WORK_DIRECTORY_SUFFIX);
+    }
+
+    /**
+     * Returns the directory receiving the SQL files translated for an additional vendor
+     * @param explodedDirectory the exploded webapp directory
+     * @param strVendor the database vendor
+     * @return the vendor SQL directory
+     */
+    protected File getVendorSqlDirectory(File explodedDirectory, String strVendor)
+    {
+        return new File(getSqlWorkDirectory(explodedDirectory), strVendor);
+    }
+
+    /**
+     * Returns the validated list of additional database vendors
+     * @return the additional database vendors, possibly empty
+     */
+    protected List<String> getTargetDatabaseVendors()
+    {
+        if (targetDatabaseVendors == null)
+        {
+            return new ArrayList<>();
+        }
+        for (String strVendor : targetDatabaseVendors)
+        {
+            if (!DATABASE_VENDORS.contains(strVendor))
+                throw new IllegalArgumentException("Unknown targetDatabaseVendors entry : '" + strVendor + "'");
+        }
+        return targetDatabaseVendors;
+    }
+
+    /**
+     * Returns the SQL translation helper of a vendor, built once per build.properties file
+     * @param buildProperties the build.properties file
+     * @param strVendor the database vendor
+     * @return the SQL translation helper
+     * @throws IOException if build.properties could not be read
+     */
+    protected SqlRegexpHelper getSqlHelper(File buildProperties, String strVendor) throws IOException
+    {
+        String strKey = strVendor + "@" + buildProperties.getAbsolutePath() + "@" + buildProperties.lastModified();
+        SqlRegexpHelper sqlHelper = sqlHelpers.get(strKey);
+        if (sqlHelper == null)
+        {
+            sqlHelper = new SqlRegexpHelper(buildProperties, strVendor);
+            sqlHelpers.put(strKey, sqlHelper);
+        }
+        return sqlHelper;
+    }
+
+    /**
+     * Copies the SQL files to WEB-INF/classes/sql and to the vendor directories, reading each source once
+     * @param sourceDirectory the SQL source directory
+     * @param targetDirectory the WEB-INF/classes/sql directory
+     * @param fileFilter the file filter (true copies the file, false ignores it)
+     * @param linefilter the line filter of WEB-INF/classes/sql
+     * @param vendorSqlDirectories the vendor directories, with their line filter
+     * @throws IOException if an I/O exception occurs
+     */
+    private void copySqlFilesWithVendors(File sourceDirectory, File targetDirectory, Function<File, Boolean> fileFilter,
+            Function<String, String> linefilter, Map<File, Function<String, String>> vendorSqlDirectories) throws IOException
+    {
+        Path source = sourceDirectory.toPath();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+            {
+                if (fileFilter.apply(file.toFile()))
+                {
+                    String strRelativePath = source.relativize(file).toString();
+                    Map<Path, Function<String, String>> destinations = new LinkedHashMap<>();
+                    destinations.put(targetDirectory.toPath().resolve(strRelativePath), linefilter);
+                    // build.properties is only needed to translate at run-time
+                    if (file.getFileName().toString().toLowerCase().endsWith(LiquiBaseSqlMojo.SQL_EXT))
+                    {
+                        for (Map.Entry<File, Function<String, String>> vendorSqlDirectory : vendorSqlDirectories.entrySet())
+                        {
+                            destinations.put(vendorSqlDirectory.getKey().toPath().resolve(strRelativePath), vendorSqlDirectory.getValue());
+                        }
+                    }
+                    for (Path destination : destinations.keySet())
+                    {
+                        Files.createDirectories(destination.getParent());
+                    }
+                    FileUtils.copyFileWithLineFilters(file, destinations);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Copies the translations of a SQL file made when its plugin was packaged, if they
+     * exist for all the vendors needed and their source did not change
+     * @param source the SQL file
+     * @param strRelativePath the path of the SQL file relative to WEB-INF/sql
+     * @param manifest the manifest of the translations of the SQL file, may be null
+     * @param sqlTranslatedDir the directory of the translations
+     * @param sqlTargetDir the WEB-INF/classes/sql directory
+     * @param strMainVendor the vendor of WEB-INF/classes/sql, null if the files are translated at run-time
+     * @param explodedDirectory the exploded webapp directory
+     * @return true if the translations were copied, false if the file has to be translated
+     */
+    private boolean copyTranslatedSqlFile(File source, String strRelativePath, SqlTranslationManifest manifest, File sqlTranslatedDir,
+            File sqlTargetDir, String strMainVendor, File explodedDirectory)
+    {
+        if (manifest == null)
+        {
+            return false;
+        }
+        try
+        {
+            String strSourceHash = SqlBuildState.hash(source.toPath());
+            Map<File, File> copies = new LinkedHashMap<>();
+            copies.put(new File(sqlTargetDir, strRelativePath),
+                    strMainVendor == null ? source : manifest.getTranslatedFile(sqlTranslatedDir, strRelativePath, strMainVendor, strSourceHash));
+            for (String strVendor : getTargetDatabaseVendors())
+            {
+                copies.put(new File(getVendorSqlDirectory(explodedDirectory, strVendor), strRelativePath),
+                        manifest.getTranslatedFile(sqlTranslatedDir, strRelativePath, strVendor, strSourceHash));
+            }
+            if (copies.containsValue(null))
+            {
+                return false;
+            }
+            for (Map.Entry<File, File> copy : copies.entrySet())
+            {
+                Files.createDirectories(copy.getKey().getParentFile().toPath());
+                Files.copy(copy.getValue().toPath(), copy.getKey().toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e)
+        {
+            getLog().debug("Could not copy the translations of " + strRelativePath + ", it will be translated", e);
+            return false;
+        }
+    }
+
+    /**
+     * Merges the single-row INSERT statements of the SQL files written by this build
+     * @param sqlDirectory the directory holding the translated SQL files
+     * @param setCopiedFiles the SQL files written by this build, relative to WEB-INF/classes
+     * @param strVendor the vendor the files were translated for
+     * @throws IOException if an I/O exception occurs
+     */
+    private void batchSqlInserts(File sqlDirectory, Set<String> setCopiedFiles, String strVendor) throws IOException
+    {
+        SqlInsertBatcher batcher = SqlInsertBatcher.forVendor(strVendor, sqlInsertBatchSize);
+        if (batcher == null)
+        {
+            getLog().info("INSERT statements are not merged for " + strVendor);
+            return;
+        }
+        int nMerged = 0;
+        for (String strFile : setCopiedFiles)
+        {
+            File file = new File(sqlDirectory, strFile.substring(SQL_PATH_PREFIX.length()));
+            if (strFile.toLowerCase().endsWith(LiquiBaseSqlMojo.SQL_EXT) && file.exists())
+                nMerged += batcher.batchFile(file.toPath());
+        }
+        getLog().info(nMerged + " INSERT statements merged in " + sqlDirectory);
+    }
+
+    /**
+     * Returns the files of an exploded webapp to exclude from a WAR, adding the
+     * SQL translations made when packaging the plugins, only used while exploding
+     * @param excludes the files to exclude
+     * @return the files to exclude from the WAR
+     */
+    protected static String[] getWarExcludes(String[] excludes)
+    {
+        String[] warExcludes = Arrays.copyOf(excludes, excludes.length + 1);
+        warExcludes[excludes.length] = EXCLUDE_PATTERN_SQL_TRANSLATED;
+        return warExcludes;
+    }
+
+    /**
+     * Builds the main WAR and one WAR per additional database vendor, in which
+     * WEB-INF/classes/sql holds the SQL files translated for this vendor. Up to
+     * archiveThreads WARs are built at the same time.
+     * @param explodedDirectory the exploded webapp directory
+     * @param strFinalName the name of the main WAR, without extension
+     * @param includes the files of the exploded webapp to include
+     * @param excludes the files of the exploded webapp to exclude
+     * @param archive the maven archive configuration
+     * @param mainWar builds the main WAR
+     * @throws MojoExecutionException if an error occurs while building a WAR
+     */
+    protected void assemblyWars(File explodedDirectory, String strFinalName, String[] includes, String[] excludes,
+            MavenArchiveConfiguration archive, ParallelTasks.Task mainWar) throws MojoExecutionException
+    {
+        String[] vendorExcludes = Arrays.copyOf(getWarExcludes(excludes), excludes.length + 2);
+        vendorExcludes[excludes.length + 1] = WEB_INF_CLASSES_SQL_PATH + INCLUDE_PATTERN_ALL;
+        configureArchive(archive);
+        List<File> listWars = new ArrayList<>();
+        listWars.add(new File(outputDirectory, strFinalName + ".war"));
+        for (String strVendor : getTargetDatabaseVendors())
+        {
+            listWars.add(new File(outputDirectory, strFinalName + "-" + strVendor + ".war"));
+        }
+        File fingerprintFile = new File(outputDirectory, strFinalName + ".war" + FINGERPRINT_EXTENSION);
+        ArchiveFingerprint fingerprint = null;
+        try
+        {
+            if (skipUnchangedArchives && !archive.isForced())
+            {
+                fingerprint = new ArchiveFingerprint().addValue("project", project.getId()).addValue("includes", Arrays.asList(includes))
+                        .addValue("excludes", Arrays.asList(excludes)).addValue("vendors", getTargetDatabaseVendors())
+                        .addValue("recompressAddedZips", recompressAddedZips).addValue("outputTimestamp", outputTimestamp)
+                        .addValue("layers", layers).addValue("classpathIndex", classpathIndex).addValue("jandex", jandex)
+                        .addArchive(archive).addArtifacts(project.getArtifacts()).addFile(project.getFile())
+                        .addFile(explodedDirectory);
+                for (String strVendor : getTargetDatabaseVendors())
+                {
+                    fingerprint.addFile(getVendorSqlDirectory(explodedDirectory, strVendor));
+                }
+                if (directWebappSources != null)
+                {
+                    for (WebappSource source : directWebappSources)
+                    {
+                        fingerprint.addFile(source.file);
+                    }
+                }
+                if (fingerprint.isUpToDate(fingerprintFile, listWars))
+                {
+                    getLog().info("WAR " + listWars.get(0).getName() + " is up to date, its inputs did not change");
+                    if (layers && !new File(getLayersDirectory(strFinalName), WebappLayers.LAYERS_INDEX_FILE).exists())
+                    {
+                        writeLayers(listWars.get(0), strFinalName);
+                    }
+                    return;
+                }
+            }
+        } catch (IOException e)
+        {
+            throw new MojoExecutionException("Error computing the fingerprint of " + explodedDirectory, e);
+        }
+        List<ParallelTasks.Task> listTasks = new ArrayList<>();
+        listTasks.add(() -> {
+            try
+            {
+                mainWar.run();
+            } catch (Exception e)
+            {
+                throw new MojoExecutionException("Error assembling WAR", e);
+            }
+        });
+        for (String strVendor : getTargetDatabaseVendors())
+        {
+            listTasks.add(() -> assemblyVendorWar(explodedDirectory, strFinalName, strVendor, includes, vendorExcludes, archive));
+        }
+        try
+        {
+            ParallelTasks.run(getArchiveThreads(), listTasks);
+            if (layers)
+            {
+                writeLayers(listWars.get(0), strFinalName);
+            }
+            if (fingerprint != null)
+            {
+                fingerprint.store(fingerprintFile, listWars);
+            }
+        } catch (MojoExecutionException e)
+        {
+            throw e;
+        } catch (Exception e)
+        {
+            throw new MojoExecutionException("Error assembling WARs", e);
+        }
+    }
+
+    /**
+     * Returns the directory of the layers of a WAR
+     * @param strFinalName the name of the WAR, without extension
+     * @return the directory
+     */
+    protected File getLayersDirectory(String strFinalName)
+    {
+        return new File(outputDirectory, strFinalName + LAYERS_DIRECTORY_SUFFIX);
+    }
+
+    /**
+     * Writes the layers of a WAR, the files of the lutece-core and plugin
+     * webapps being recognized from their webapp artifacts
+     * @param warFile the WAR
+     * @param strFinalName the name of the WAR, without extension
+     * @throws MojoExecutionException if an error occurs while writing the layers
+     */
+    protected void writeLayers(File warFile, String strFinalName) throws MojoExecutionException
+    {
+        File layersDirectory = getLayersDirectory(strFinalName);
+        getLog().info("Writing the layers of " + warFile.getName() + " to " + layersDirectory);
+        try
+        {
+            WebappLayers webappLayers = new WebappLayers();
+            for (Artifact artifact : filterArtifacts(THIRD_PARTY_JAR_FILTER))
+            {
+                webappLayers.addDependencyJar(artifact.getFile());
+            }
+            Artifact coreArtifact = getCoreArtifact();
+            if (coreArtifact != null)
+            {
+                webappLayers.addCore(coreArtifact.getFile(), resolveWebappArtifact(coreArtifact));
+            }
+            for (Artifact pluginArtifact : filterArtifacts(new TypeArtifactFilter(LUTECE_PLUGIN_TYPE)))
+            {
+                webappLayers.addPlugin(pluginArtifact.getFile(), resolveWebappArtifact(pluginArtifact));
+            }
+            Map<String, Integer> mapCounts = webappLayers.write(warFile, layersDirectory);
+            getLog().info("Layers " + mapCounts);
+        } catch (IOException e)
+        {
+            throw new MojoExecutionException("Error writing the layers of " + warFile, e);
+        }
+    }
+
+    /**
+     * Builds the WAR of an additional database vendor
+     * @param explodedDirectory the exploded webapp directory
+     * @param strFinalName the name of the main WAR, without extension
+     * @param strVendor the database vendor
+     * @param includes the files of the exploded webapp to include
+     * @param vendorExcludes the files of the exploded webapp to exclude, the main SQL files included
+     * @param archive the maven archive configuration
+     * @throws MojoExecutionException if an error occurs while building the WAR
+     */
+    private void assemblyVendorWar(File explodedDirectory, String strFinalName, String strVendor, String[] includes, String[] vendorExcludes,
+            MavenArchiveConfiguration archive) throws MojoExecutionException
+    {
+        File vendorWarFile = new File(outputDirectory, strFinalName + "-" + strVendor + ".war");
+        getLog().info("Building " + strVendor + " WAR " + vendorWarFile.getName());
+        try
+        {
+            MavenArchiver archiver = new MavenArchiver();
+            archiver.setArchiver((JarArchiver) archiverManager.getArchiver("jar"));
+            configureArchiver(archiver);
+            archiver.setOutputFile(vendorWarFile);
+            addWebappToArchive(archiver.getArchiver(), explodedDirectory, includes, vendorExcludes);
+            File vendorSqlDirectory = getVendorSqlDirectory(explodedDirectory, strVendor);
+            if (vendorSqlDirectory.exists())
+            {
+                archiver.getArchiver().addDirectory(vendorSqlDirectory, WEB_INF_CLASSES_SQL_PATH, new String[] { INCLUDE_PATTERN_ALL }, null);
+            }
+            archiver.createArchive(session, project, archive);
+        } catch (Exception e)
+        {
+            throw new MojoExecutionException("Error assembling " + strVendor + " WAR", e);
+        }
+    }
+
+    /**
+     * Loads the state of the previous SQL generation, reset if the vendor or build.properties changed
+     * @param explodedDirectory the exploded webapp directory
+     * @param strVendor the target database vendor
+     * @param buildProperties the build.properties file used for the translation
+     * @return the SQL build state
+     * @throws IOException if the state could not be read
+     */
+    private SqlBuildState loadSqlBuildState(File explodedDirectory, String strVendor, File buildProperties) throws IOException
+    {
+        SqlBuildState state = SqlBuildState.load(new File(getSqlWorkDirectory(explodedDirectory), SQL_STATE_FILE));
+        String strVendorKey = String.valueOf(strVendor);
+        String strBuildPropertiesHash = buildProperties.exists() ? SqlBuildState.hash(buildProperties.toPath()) : "";
+        if (!state.isCompatible(strVendorKey, strBuildPropertiesHash))
+        {
+            getLog().info("SQL target or build.properties changed, all SQL files will be generated");
+            state.reset(strVendorKey, strBuildPropertiesHash);
+        }
+        return state;
+    }
 
+    /**
+     * Returns the SQL scripts of an exploded webapp by plugin, in execution order
+     * @param explodedDirectory the exploded webapp directory
+     * @return the scripts by plugin, their paths being relative to WEB-INF
+     * @throws IOException if the SQL directory could not be read
+     */
+    protected List<PluginSqlScripts> getSqlScriptsIndex(File explodedDirectory) throws IOException
+    {
+        return getSqlDirectoryIndex(new File(explodedDirectory, WEB_INF_SQL_PATH));
+    }
 
+    /**
+     * Builds the index of the create and upgrade scripts of a SQL directory
+     * @param sqlDirectory the SQL directory, with the WEB-INF/sql layout
+     * @return the scripts, by plugin, with the core first
+     * @throws IOException if the directory could not be read
+     */
+    protected List<PluginSqlScripts> getSqlDirectoryIndex(File sqlDirectory) throws IOException
+    {
+        List<String> listScripts = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(sqlDirectory.toPath()))
+        {
+            paths.filter(path -> path.getFileName().toString().toLowerCase().endsWith(LiquiBaseSqlMojo.SQL_EXT) && path.toFile().length() > 0)
+                    .forEach(path -> listScripts.add(SQL_PATH_PREFIX + getSqlRelativePath(sqlDirectory, path.toFile())));
+        }
+        return SqlIndexService.buildIndex(listScripts);
     }
 
+    /**
+     * Analyzes the schema defined by the scripts of a SQL directory and writes the findings into a report
+     * @param sqlDirectory the SQL directory, with the WEB-INF/sql layout
+     * @param report the report file
+     * @param strName the name of the analyzed project, for the report
+     * @return the number of findings
+     * @throws IOException if a script or the report could not be read or written
+     */
+    protected int adviseSqlSchema(File sqlDirectory, File report, String strName) throws IOException
+    {
+        SqlSchemaAdvisor advisor = new SqlSchemaAdvisor();
+        for (PluginSqlScripts plugin : getSqlDirectoryIndex(sqlDirectory))
+        {
+            List<String> listScripts = new ArrayList<>(plugin.getCreateScripts());
+            listScripts.addAll(plugin.getUpgradeScripts());
+            for (String strScript : listScripts)
+            {
+                try (Reader reader = Files.newBufferedReader(new File(sqlDirectory, strScript.substring(SQL_PATH_PREFIX.length())).toPath(), StandardCharsets.UTF_8))
+                {
+                    advisor.analyze(strScript, reader);
+                }
+            }
+        }
+        int nFindings = advisor.store(report, "SQL schema of " + strName);
+        if (nFindings > 0)
+            getLog().warn(nFindings + " issues found in the SQL schema (missing indexes or primary keys, MyISAM tables), see " + report);
+        return nFindings;
+    }
+
+    /**
+     * Returns the path of a SQL file relative to a SQL directory, with '/' separators
+     * @param sqlDirectory the SQL directory
+     * @param file the SQL file
+     * @return the relative path
+     */
+    protected static String getSqlRelativePath(File sqlDirectory, File file)
+    {
+        return sqlDirectory.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
 
    /**
      * generate microprofile-config.properties file indicating if liquibase can run or not
@@ -836,11 +1788,6 @@ public abstract class AbstractLuteceWebappMojo
                 lq_propertiesFileDir.mkdirs();
             }
             File liquibasePropertiesFile = new File(lq_propertiesFileDir, LiquiBaseSqlMojo.MICROPROFILE_CONFIG_PROPERTIES_FILE);
-            if (liquibasePropertiesFile.exists())
-            {
-                liquibasePropertiesFile.delete();
-            }
-               getLog().info("Generating file " +  explodedDirectory +META_INF_DIRECTORY + LiquiBaseSqlMojo.MICROPROFILE_CONFIG_PROPERTIES_FILE );
                 StringBuilder sb = new StringBuilder();
                 sb.append("# Generated file - do not edit\n");
                 sb.append("liquibase.readyToRun="+listLiquibaseFileErrors.isEmpty()+"\n");
@@ -857,7 +1804,15 @@ public abstract class AbstractLuteceWebappMojo
                 }
               sb.append("\n"); 
              
-              Files.write(liquibasePropertiesFile.toPath(), sb.toString().getBytes());    
+              byte[] content = sb.toString().getBytes();
+              // do not touch an unchanged file, its timestamp would trigger a reload
+              if (liquibasePropertiesFile.exists() && Arrays.equals(content, Files.readAllBytes(liquibasePropertiesFile.toPath())))
+              {
+                  getLog().info("File " + explodedDirectory + META_INF_DIRECTORY + LiquiBaseSqlMojo.MICROPROFILE_CONFIG_PROPERTIES_FILE + " is up to date");
+                  return;
+              }
+               getLog().info("Generating file " +  explodedDirectory +META_INF_DIRECTORY + LiquiBaseSqlMojo.MICROPROFILE_CONFIG_PROPERTIES_FILE );
+              Files.write(liquibasePropertiesFile.toPath(), content);    
         }
         
         catch (Exception e)
@@ -866,6 +1821,138 @@ public abstract class AbstractLuteceWebappMojo
         }
     }
 
+    /**
+     * generate the liquibase index file listing the SQL scripts of the webapp
+     * by plugin, in execution order, so that they need not be discovered at run-time
+     * @param listLiquibaseFiles the liquibase files, relative to WEB-INF/classes
+     * @param explodedDirectory
+     * @throws MojoExecutionException
+     */
+    private void generateLiquibaseIndex(List<String> listLiquibaseFiles, File explodedDirectory) throws MojoExecutionException
+    {
+        try
+        {
+            File indexFile = new File(explodedDirectory, META_INF_DIRECTORY + LIQUIBASE_INDEX_FILE);
+            indexFile.getParentFile().mkdirs();
+            List<PluginSqlScripts> listPlugins = SqlIndexService.buildIndex(listLiquibaseFiles);
+            for (PluginSqlScripts plugin : listPlugins)
+            {
+                for (String strGap : plugin.getUpgradeGraph().getGaps())
+                {
+                    getLog().warn("No SQL upgrade path from version " + strGap + " to " + plugin.getUpgradeGraph().getLatestVersion() + " for " + plugin.getName());
+                }
+            }
+            byte[] content = SqlIndexService.toProperties(listPlugins).getBytes(StandardCharsets.UTF_8);
+            if (indexFile.exists() && Arrays.equals(content, Files.readAllBytes(indexFile.toPath())))
+            {
+                getLog().info("File " + explodedDirectory + META_INF_DIRECTORY + LIQUIBASE_INDEX_FILE + " is up to date");
+                return;
+            }
+            getLog().info("Generating file " + explodedDirectory + META_INF_DIRECTORY + LIQUIBASE_INDEX_FILE);
+            Files.write(indexFile.toPath(), content);
+        }
+        catch (Exception e)
+        {
+            throw new MojoExecutionException("Error while generating " + LIQUIBASE_INDEX_FILE + " file", e);
+        }
+    }
+
+    /**
+     * generate the index of the changesets of the SQL scripts of the webapp, with a
+     * checksum of their content to detect the changed scripts without re-reading them.
+     * The checksums are not the Liquibase ones stored in DATABASECHANGELOG
+     * @param listLiquibaseFiles the liquibase files, relative to WEB-INF/classes
+     * @param setCopiedFiles the liquibase files written by this build, the others are unchanged
+     * @param explodedDirectory
+     * @param strVendor the vendor the files were translated for, null if they are translated at run-time
+     * @throws MojoExecutionException
+     */
+    private void generateSqlChangeSetIndex(List<String> listLiquibaseFiles, Set<String> setCopiedFiles, File explodedDirectory, String strVendor) throws MojoExecutionException
+    {
+        try
+        {
+            File checksumsFile = new File(explodedDirectory, META_INF_DIRECTORY + SQL_CHANGESETS_FILE);
+            if (strVendor == null)
+            {
+                // the run-time translation changes the content, the checksums would not match the scripts run
+                Files.deleteIfExists(checksumsFile.toPath());
+                return;
+            }
+            SqlChangeSetChecksums previous = SqlChangeSetChecksums.load(checksumsFile);
+            SqlChangeSetChecksums checksums = new SqlChangeSetChecksums();
+            int nComputed = 0;
+            for (String strFile : listLiquibaseFiles)
+            {
+                if (setCopiedFiles.contains(strFile) || !checksums.reuse(previous, strFile))
+                {
+                    checksums.compute(strFile, new File(explodedDirectory, WEB_INF_CLASSES_PATH + strFile).toPath());
+                    nComputed++;
+                }
+            }
+            byte[] content = checksums.toIndex(strVendor).getBytes(StandardCharsets.UTF_8);
+            if (checksumsFile.exists() && Arrays.equals(content, Files.readAllBytes(checksumsFile.toPath())))
+            {
+                getLog().info("File " + explodedDirectory + META_INF_DIRECTORY + SQL_CHANGESETS_FILE + " is up to date");
+                return;
+            }
+            getLog().info("Generating file " + explodedDirectory + META_INF_DIRECTORY + SQL_CHANGESETS_FILE + " (" + nComputed + " SQL files hashed)");
+            checksumsFile.getParentFile().mkdirs();
+            Files.write(checksumsFile.toPath(), content);
+        }
+        catch (Exception e)
+        {
+            throw new MojoExecutionException("Error while generating " + SQL_CHANGESETS_FILE + " file", e);
+        }
+    }
+
 
     
+    /**
+     * Filters the jar artifacts in scope 'compile' or 'runtime'
+     */
+    private static final ArtifactFilter THIRD_PARTY_JAR_FILTER = artifact -> "jar".equals( artifact.getType(  ) ) &&
+        ( Artifact.SCOPE_RUNTIME.equals( artifact.getScope(  ) ) || Artifact.SCOPE_COMPILE.equals( artifact.getScope(  ) ) );
+
+    /**
+     * A source of the WARs in direct mode : a directory, a webapp zip or a jar
+     */
+    private static final class WebappSource
+    {
+        private final File file;
+        // the path of the source in the WAR, null for a webapp zip
+        private final String prefix;
+
+        WebappSource( File file, String prefix )
+        {
+            this.file = file;
+            this.prefix = prefix;
+        }
+
+        /**
+         * Adds the source to an archiver
+         * @param archiver the archiver
+         * @param includes the files to include
+         * @param excludes the files to exclude
+         */
+        void addTo( Archiver archiver, String[] includes, String[] excludes )
+        {
+            if ( ( file == null ) || !file.exists(  ) )
+            {
+                return;
+            }
+
+            if ( prefix == null )
+            {
+                archiver.addArchivedFileSet( file, "", includes, excludes );
+            }
+            else if ( file.isDirectory(  ) )
+            {
+                archiver.addDirectory( file, prefix, includes, excludes );
+            }
+            else
+            {
+                archiver.addFile( file, prefix + file.getName(  ) );
+            }
+        }
+    }
 }
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.components.io.fileselectors.FileInfo;
+import org.codehaus.plexus.components.io.fileselectors.FileSelector;
+
+/**
+ * The file-level difference between an archive and a previously released
+ * archive. Entries are compared on their size and CRC, as recorded in the
+ * zip directories, so that no entry has to be decompressed.
+ * <br>
+ * The delta selects the new or changed entries of the archive when it is used
+ * as the file selector of an archived file set.
+ * <br>
+ * Only the entries the compared archive manages can be deleted : the paths of
+ * the previous archive it does not manage are ignored, and files which were
+ * released outside of the previous archive, as jars, are added to it.
+ */
+public class ArchiveDelta implements FileSelector
+{
+    private final String _strPrefix;
+    private final String[] _ignoredPaths;
+    private final Map<String, String> _mapPreviousEntries = new HashMap<>(  );
+    private final Set<String> _setChangedEntries = new HashSet<>(  );
+    private final List<String> _listDeletedEntries = new ArrayList<>(  );
+
+    /**
+     * Constructor
+     * @param previousArchive The previously released archive
+     * @param strPrefix The path of the previous archive's entries in the compared archive
+     * @param ignoredPaths The paths of the previous archive which the compared archive does not manage,
+     *        never listed as deleted
+     * @throws IOException if the previous archive could not be read
+     */
+    public ArchiveDelta( File previousArchive, String strPrefix, String... ignoredPaths ) throws IOException
+    {
+        _strPrefix = strPrefix;
+        _ignoredPaths = ignoredPaths;
+
+        try ( ZipFile zip = new ZipFile( previousArchive ) )
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(  ); entries.hasMoreElements(  ); )
+            {
+                ZipEntry entry = entries.nextElement(  );
+
+                if ( !entry.isDirectory(  ) )
+                {
+                    _mapPreviousEntries.put( entry.getName(  ), getEntryState( entry ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds files released with the previous archive but outside of it
+     * @param strPath The path of the files in the previous archive
+     * @param files The files, ignored if null or missing
+     * @throws IOException if a file could not be read
+     */
+    public void addPreviousFiles( String strPath, Collection<File> files ) throws IOException
+    {
+        byte[] buffer = new byte[8192];
+
+        for ( File file : files )
+        {
+            if ( ( file == null ) || !file.isFile(  ) )
+            {
+                continue;
+            }
+
+            CRC32 crc = new CRC32(  );
+
+            try ( InputStream in = Files.newInputStream( file.toPath(  ) ) )
+            {
+                int nRead;
+
+                while ( ( nRead = in.read( buffer ) ) > 0 )
+                {
+                    crc.update( buffer, 0, nRead );
+                }
+            }
+
+            _mapPreviousEntries.put( strPath + file.getName(  ), file.length(  ) + ":" + crc.getValue(  ) );
+        }
+    }
+
+    /**
+     * Compares an archive to the previous one
+     * @param archive The archive
+     * @throws IOException if the archive could not be read
+     */
+    public void compare( File archive ) throws IOException
+    {
+        Set<String> setMatchedEntries = new HashSet<>(  );
+
+        try ( ZipFile zip = new ZipFile( archive ) )
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(  ); entries.hasMoreElements(  ); )
+            {
+                ZipEntry entry = entries.nextElement(  );
+
+                if ( entry.isDirectory(  ) )
+                {
+                    continue;
+                }
+
+                String strName = entry.getName(  );
+                String strPreviousName = strName.startsWith( _strPrefix ) ? strName.substring( _strPrefix.length(  ) ) : strName;
+                String strPreviousState = _mapPreviousEntries.get( strPreviousName );
+
+                if ( strPreviousState != null )
+                {
+                    setMatchedEntries.add( strPreviousName );
+                }
+
+                if ( !getEntryState( entry ).equals( strPreviousState ) )
+                {
+                    _setChangedEntries.add( strName );
+                }
+            }
+        }
+
+        for ( String strPreviousName : _mapPreviousEntries.keySet(  ) )
+        {
+            if ( !setMatchedEntries.contains( strPreviousName ) && !isIgnored( strPreviousName ) )
+            {
+                _listDeletedEntries.add( _strPrefix + strPreviousName );
+            }
+        }
+
+        Collections.sort( _listDeletedEntries );
+    }
+
+    /**
+     * Returns the number of new or changed entries
+     * @return The number of entries
+     */
+    public int getChangedCount(  )
+    {
+        return _setChangedEntries.size(  );
+    }
+
+    /**
+     * Returns the entries of the previous archive which are no longer in the archive
+     * @return The entries, with the path they had in the archive
+     */
+    public List<String> getDeletedEntries(  )
+    {
+        return _listDeletedEntries;
+    }
+
+    /**
+     * Stores the list of deleted entries, one per line
+     * @param file The file
+     * @throws IOException if the file could not be written
+     */
+    public void storeDeletedEntries( File file ) throws IOException
+    {
+        Files.write( file.toPath(  ), _listDeletedEntries, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSelected( FileInfo fileInfo )
+    {
+        return _setChangedEntries.contains( fileInfo.getName(  ) );
+    }
+
+    /**
+     * Tells if an entry of the previous archive is not part of the compared archive
+     * @param strName The name of the entry
+     * @return true if the entry is ignored
+     */
+    private boolean isIgnored( String strName )
+    {
+        for ( String strPath : _ignoredPaths )
+        {
+            if ( strName.startsWith( strPath ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the state of an entry
+     * @param entry The entry
+     * @return Its size and CRC
+     */
+    private static String getEntryState( ZipEntry entry )
+    {
+        return entry.getSize(  ) + ":" + entry.getCrc(  );
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import org.apache.maven.archiver.ManifestConfiguration;
+import org.apache.maven.archiver.ManifestSection;
+import org.apache.maven.archiver.MavenArchiveConfiguration;
+import org.apache.maven.artifact.Artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The fingerprint of the inputs of archives (files, directories and
+ * configuration values), stored next to the archives so that a goal can skip
+ * building them again when nothing changed since the previous build.
+ * <br>
+ * Files are fingerprinted on their content : rewriting an unchanged file, as
+ * exploding a webapp does, does not change the fingerprint.
+ */
+public class ArchiveFingerprint
+{
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_OUTPUT_PREFIX = "output.";
+    private static final int BUFFER_SIZE = 65536;
+
+    private final MessageDigest _digest;
+    private final byte[] _buffer = new byte[BUFFER_SIZE];
+    private String _strValue;
+
+    /**
+     * Constructor
+     */
+    public ArchiveFingerprint(  )
+    {
+        try
+        {
+            _digest = MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Adds a configuration value
+     * @param strName The name of the value
+     * @param value The value, may be null
+     * @return This fingerprint
+     */
+    public ArchiveFingerprint addValue( String strName, Object value )
+    {
+        update( strName + "=" + value + "\n" );
+
+        return this;
+    }
+
+    /**
+     * Adds the effective configuration of an archive built with MavenArchiver :
+     * its options, its manifest configuration and entries, whether set in the
+     * POM, inherited from a parent POM or set through properties, and the
+     * content of its manifest and pom.properties files
+     * @param archive The archive configuration
+     * @return This fingerprint
+     * @throws IOException if a file of the configuration could not be read
+     */
+    public ArchiveFingerprint addArchive( MavenArchiveConfiguration archive ) throws IOException
+    {
+        addValue( "archive.compress", archive.isCompress(  ) );
+        addValue( "archive.addMavenDescriptor", archive.isAddMavenDescriptor(  ) );
+        addValue( "archive.manifestEntries", new TreeMap<>( archive.getManifestEntries(  ) ) );
+
+        ManifestConfiguration manifest = archive.getManifest(  );
+
+        if ( manifest != null )
+        {
+            addValue( "archive.manifest.mainClass", manifest.getMainClass(  ) );
+            addValue( "archive.manifest.addClasspath", manifest.isAddClasspath(  ) );
+            addValue( "archive.manifest.addDefaultEntries", manifest.isAddDefaultEntries(  ) );
+            addValue( "archive.manifest.addBuildEnvironmentEntries", manifest.isAddBuildEnvironmentEntries(  ) );
+            addValue( "archive.manifest.addDefaultSpecificationEntries", manifest.isAddDefaultSpecificationEntries(  ) );
+            addValue( "archive.manifest.addDefaultImplementationEntries", manifest.isAddDefaultImplementationEntries(  ) );
+            addValue( "archive.manifest.addExtensions", manifest.isAddExtensions(  ) );
+            addValue( "archive.manifest.classpathPrefix", manifest.getClasspathPrefix(  ) );
+            addValue( "archive.manifest.classpathLayoutType", manifest.getClasspathLayoutType(  ) );
+            addValue( "archive.manifest.customClasspathLayout", manifest.getCustomClasspathLayout(  ) );
+            addValue( "archive.manifest.useUniqueVersions", manifest.isUseUniqueVersions(  ) );
+        }
+
+        for ( ManifestSection section : archive.getManifestSections(  ) )
+        {
+            addValue( "archive.manifestSection." + section.getName(  ), new TreeMap<>( section.getManifestEntries(  ) ) );
+        }
+
+        addFile( archive.getManifestFile(  ) );
+        addFile( archive.getPomPropertiesFile(  ) );
+
+        return this;
+    }
+
+    /**
+     * Adds resolved artifacts, on their id and on the size and modification
+     * time of their file, so that a re-resolved snapshot changes the fingerprint
+     * @param artifacts The artifacts, in any order
+     * @return This fingerprint
+     */
+    public ArchiveFingerprint addArtifacts( Collection<Artifact> artifacts )
+    {
+        TreeSet<String> setArtifacts = new TreeSet<>(  );
+
+        for ( Artifact artifact : artifacts )
+        {
+            File file = artifact.getFile(  );
+            setArtifacts.add( artifact.getId(  ) + ":" + artifact.getScope(  ) + ":" +
+                ( ( file == null ) ? "" : getOutputState( file ) ) );
+        }
+
+        for ( String strArtifact : setArtifacts )
+        {
+            addValue( "artifact", strArtifact );
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds a file, or the files of a directory
+     * @param file The file or directory, ignored if it does not exist
+     * @return This fingerprint
+     * @throws IOException if a file could not be read
+     */
+    public ArchiveFingerprint addFile( File file ) throws IOException
+    {
+        update( "file=" + ( ( file == null ) ? null : file.getAbsolutePath(  ) ) + "\n" );
+
+        if ( ( file == null ) || !file.exists(  ) )
+        {
+            return this;
+        }
+
+        Path root = file.toPath(  );
+
+        if ( !file.isDirectory(  ) )
+        {
+            addContent( root );
+
+            return this;
+        }
+
+        List<Path> listFiles;
+
+        try ( Stream<Path> paths = Files.walk( root ) )
+        {
+            listFiles = paths.filter( Files::isRegularFile ).sorted(  ).collect( Collectors.toList(  ) );
+        }
+
+        for ( Path path : listFiles )
+        {
+            update( root.relativize( path ).toString(  ).replace( File.separatorChar, '/' ) + "\n" );
+            addContent( path );
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the fingerprint value. No input can be added afterwards.
+     * @return The SHA-256 of the inputs, in hexadecimal
+     */
+    public String getValue(  )
+    {
+        if ( _strValue == null )
+        {
+            StringBuilder sb = new StringBuilder(  );
+
+            for ( byte b : _digest.digest(  ) )
+            {
+                sb.append( String.format( "%02x", b ) );
+            }
+
+            _strValue = sb.toString(  );
+        }
+
+        return _strValue;
+    }
+
+    /**
+     * Tells if the archives were built from the same inputs and were not modified since
+     * @param stateFile The file storing the fingerprint of the previous build
+     * @param listOutputs The archives
+     * @return true if the archives are up to date
+     * @throws IOException if the state file could not be read
+     */
+    public boolean isUpToDate( File stateFile, List<File> listOutputs ) throws IOException
+    {
+        if ( !stateFile.exists(  ) )
+        {
+            return false;
+        }
+
+        Properties state = new Properties(  );
+
+        try ( Reader reader = Files.newBufferedReader( stateFile.toPath(  ), StandardCharsets.UTF_8 ) )
+        {
+            state.load( reader );
+        }
+
+        if ( !getValue(  ).equals( state.getProperty( KEY_FINGERPRINT ) ) ||
+                ( state.size(  ) != ( listOutputs.size(  ) + 1 ) ) )
+        {
+            return false;
+        }
+
+        for ( File output : listOutputs )
+        {
+            if ( !output.exists(  ) || !getOutputState( output ).equals( state.getProperty( KEY_OUTPUT_PREFIX + output.getName(  ) ) ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stores the fingerprint with the state of the archives built from the inputs
+     * @param stateFile The file storing the fingerprint
+     * @param listOutputs The archives
+     * @throws IOException if the state file could not be written
+     */
+    public void store( File stateFile, List<File> listOutputs ) throws IOException
+    {
+        Properties state = new Properties(  );
+        state.setProperty( KEY_FINGERPRINT, getValue(  ) );
+
+        for ( File output : listOutputs )
+        {
+            state.setProperty( KEY_OUTPUT_PREFIX + output.getName(  ), getOutputState( output ) );
+        }
+
+        stateFile.getParentFile(  ).mkdirs(  );
+
+        try ( OutputStream out = Files.newOutputStream( stateFile.toPath(  ) ) )
+        {
+            state.store( out, null );
+        }
+    }
+
+    /**
+     * Returns the state of an archive
+     * @param output The archive
+     * @return Its size and modification time, or an empty string if it does not exist
+     */
+    private static String getOutputState( File output )
+    {
+        return output.exists(  ) ? ( output.length(  ) + ":" + output.lastModified(  ) ) : "";
+    }
+
+    /**
+     * Adds the content of a file
+     * @param path The file
+     * @throws IOException if the file could not be read
+     */
+    private void addContent( Path path ) throws IOException
+    {
+        try ( InputStream in = Files.newInputStream( path ) )
+        {
+            int nRead;
+
+            while ( ( nRead = in.read( _buffer ) ) > 0 )
+            {
+                _digest.update( _buffer, 0, nRead );
+            }
+        }
+
+        update( "\n" );
+    }
+
+    /**
+     * Adds a text
+     * @param strText The text
+     */
+    private void update( String strText )
+    {
+        _digest.update( strText.getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
@@ -34,12 +34,12 @@
 package fr.paris.lutece.maven;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -180,8 +180,27 @@ public class AssemblyMojo
         validatePackaging( LUTECE_CORE_PACKAGING, LUTECE_PLUGIN_PACKAGING );
         {
             getLog(  ).info( "Assembly " + project.getArtifact(  ).getType(  ) + " artifact..." );
-            assemblyBinaries(  );
-            assemblySources(  );
+
+            // Resolve the dependencies once for both archives
+            Collection<File> dependentJars = getDependentJars(  );
+
+            // The binary and source archives don't share any archiver
+            List<ParallelTasks.Task> listTasks = new ArrayList<>(  );
+            listTasks.add( (  ) -> assemblyBinaries( dependentJars ) );
+            listTasks.add( (  ) -> assemblySources( dependentJars ) );
+
+            try
+            {
+                ParallelTasks.run( getArchiveThreads(  ), listTasks );
+            }
+            catch ( MojoExecutionException e )
+            {
+                throw e;
+            }
+            catch ( Exception e )
+            {
+                throw new MojoExecutionException( "Error assembling ZIP", e );
+            }
         }
     }
 
@@ -203,12 +222,15 @@ public class AssemblyMojo
     }
 
     /**
-     * Create a zip with binaries files.
+     * Create a zip with binaries files. The jar and the core war can't be
+     * streamed into their enclosing archive, they are written to disk first
+     * and then stored without being compressed again.
      *
+     * @param dependentJars the dependent jars to add to the webapp
      * @throws MojoExecutionException
      *             if an error occured while building the artifact.
      */
-    private void assemblyBinaries(  )
+    private void assemblyBinaries( Collection<File> dependentJars )
                            throws MojoExecutionException
     {
         try
@@ -222,6 +244,7 @@ public class AssemblyMojo
             File jarFile = getArchiveFile( null, false, "jar" );
             //jarArchiver.reset(  );
             archiver.setArchiver( jarArchiver );
+            configureArchiver( archiver );
             archiver.setOutputFile( jarFile );
 
             if ( ! classesDirectory.exists(  ) )
@@ -233,7 +256,7 @@ public class AssemblyMojo
                         .addDirectory( classesDirectory, PACKAGE_CLASSES_INCLUDES, PACKAGE_CLASSES_EXCLUDES );
             }
 
-            archiver.createArchive( session, project, archiveCfg );
+            archiver.createArchive( session, project, configureArchive( archiveCfg ) );
 
             // Create core war
             File warFile = getArchiveFile( null, false, "war" );
@@ -242,6 +265,7 @@ public class AssemblyMojo
             {
                 archiver = new MavenArchiver(  );
                 archiver.setArchiver( warArchiver );
+                configureArchiver( archiver );
                 archiver.setOutputFile( warFile );
 
                 if ( ! webappSourceDirectory.exists(  ) )
@@ -300,7 +324,7 @@ public class AssemblyMojo
                 }
 
                 // Add dependant jars
-                for ( File f : getDependentJars(  ) )
+                for ( File f : dependentJars )
                 {
                     if ( ( null != f ) && f.exists(  ) )
                     {
@@ -308,13 +332,14 @@ public class AssemblyMojo
                     }
                 }
 
-                archiver.createArchive( session, project, archiveCfg );
+                archiver.createArchive( session, project, configureArchive( archiveCfg ) );
             }
 
             // Create the final zip file
             File webappZip = getArchiveFile( ( LUTECE_CORE_TYPE.equals( projectType ) ? "war" : "bin" ), true, "zip" );
             //zipBinArchiver.reset(  );
             zipBinArchiver.setCompress( true );
+            configureArchiver( zipBinArchiver );
             zipBinArchiver.setForced( forceCreation );
             zipBinArchiver.setDestFile( webappZip );
 
@@ -377,7 +402,7 @@ public class AssemblyMojo
                 zipBinArchiver.addFile( jarFile, WEB_INF_LIB_PATH + jarFile.getName(  ) );
 
                 // Add the dependency libraries
-                for ( File f : getDependentJars(  ) )
+                for ( File f : dependentJars )
                 {
                     if ( ( null != f ) && f.exists(  ) )
                     {
@@ -408,9 +433,10 @@ public class AssemblyMojo
     /**
      * Create a zip with the source files.
      *
+     * @param dependentJars the dependent jars to add to the webapp
      * @throws MojoExecutionException
      */
-    private void assemblySources(  )
+    private void assemblySources( Collection<File> dependentJars )
                           throws MojoExecutionException
     {
         try
@@ -419,6 +445,7 @@ public class AssemblyMojo
             File webappZip = getArchiveFile( "src", true, "zip" );
            // zipSrcArchiver.reset(  );
             zipSrcArchiver.setCompress( true );
+            configureArchiver( zipSrcArchiver );
             zipSrcArchiver.setForced( forceCreation );
             zipSrcArchiver.setDestFile( webappZip );
 
@@ -448,7 +475,7 @@ public class AssemblyMojo
             }
 
             // Add the dependency libraries to the zip
-            for ( File f : getDependentJars(  ) )
+            for ( File f : dependentJars )
             {
                 if ( ( null != f ) && f.exists(  ) )
                 {
@@ -477,12 +504,9 @@ public class AssemblyMojo
      */
     private File getArchiveFile( String classifier, boolean timestamp, String extension )
     {
-        SimpleDateFormat dateFormat = new SimpleDateFormat( "yyMMdd-hhmm" );
-        dateFormat.format( new Date(  ) ).toString(  );
-
         return new File( getOutputDirectory(  ),
                          artifactName + ( ( null != classifier ) ? ( "-" + classifier ) : "" ) +
-                         ( timestamp ? ( "-" + dateFormat.format( new Date(  ) ).toString(  ) ) : "" ) + "." +
+                         ( timestamp ? ( "-" + formatBuildDate( "yyMMdd-HHmm" ) ) : "" ) + "." +
                          extension );
     }
 
@@ -34,9 +34,6 @@
 package fr.paris.lutece.maven;
 
 import java.io.File;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import javax.inject.Inject;
 
 import org.apache.maven.archiver.MavenArchiveConfiguration;
@@ -154,15 +151,16 @@ public class AssemblySiteMojo
                        throws MojoExecutionException
     {
         // Explode the webapp in the temporary directory
-        explodeWebapp( explodedDirectory );
-        explodeConfigurationFiles( explodedDirectory );
-        explodeSqlFiles(explodedDirectory, targetDatabaseVendor);
+        // (or only stage its SQL and configuration files in direct mode)
+        File webappDir = prepareWebapp( explodedDirectory );
+        explodeSqlFiles(webappDir, targetDatabaseVendor);
+        writeClasspathIndex( webappDir );
+        writeJandexIndexes( webappDir );
         
         // put the timestamp in the assembly name
         if ( ArtifactUtils.isSnapshot( project.getVersion(  ) ) )
         {
-            DateFormat utcDateFormatter = new SimpleDateFormat( utcTimestampPattern );
-            String newVersion = utcDateFormatter.format( new Date(  ) );
+            String newVersion = formatBuildDate( utcTimestampPattern );
             finalName = StringUtils.replace( finalName, SNAPSHOT_PATTERN, newVersion );
         }
 
@@ -171,21 +169,20 @@ public class AssemblySiteMojo
 
         MavenArchiver archiver = new MavenArchiver(  );
         archiver.setArchiver( jarArchiver );
+        configureArchiver( archiver );
         archiver.setOutputFile( warFile );
         archive.setForced( forceCreation );
 
-        try
-        {
-            if ( explodedDirectory.exists(  ) )
+        // the vendor WARs are built at the same time
+        assemblyWars( webappDir, finalName, PACKAGE_WEBAPP_INCLUDES, PACKAGE_WEBAPP_RESOURCES_EXCLUDES, archive, (  ) ->
             {
-                archiver.getArchiver(  )
-                        .addDirectory( explodedDirectory, PACKAGE_WEBAPP_INCLUDES, PACKAGE_WEBAPP_RESOURCES_EXCLUDES );
-            }
-
-            archiver.createArchive( session, project, archive );
-        } catch ( Exception e )
-        {
-            throw new MojoExecutionException( "Error assembling WAR", e );
-        }
+                if ( webappDir.exists(  ) )
+                {
+                    addWebappToArchive( archiver.getArchiver(  ), webappDir, PACKAGE_WEBAPP_INCLUDES,
+                                        getWarExcludes( PACKAGE_WEBAPP_RESOURCES_EXCLUDES ) );
+                }
+
+                archiver.createArchive( session, project, archive );
+            } );
     }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An index of the jars of a webapp, mapping every package and resource
+ * directory to the jars which contain it, so that a class loader can look a
+ * resource up without probing every jar.
+ * <br>
+ * The index is written in the format of the jar index (INDEX.LIST) : a header,
+ * then for each jar its name followed by the directories holding its files,
+ * the root files being listed by name. The META-INF directory is not indexed.
+ */
+public class ClasspathIndex
+{
+    public static final String CLASSPATH_INDEX_PATH = "WEB-INF/classpath.idx";
+
+    private static final String HEADER = "JarIndex-Version: 1.0";
+    private static final String META_INF_PATH = "META-INF/";
+    private static final String CLASS_EXTENSION = ".class";
+
+    private final Map<String, Set<String>> _mapJarEntries = new TreeMap<>(  );
+    private final Map<String, Set<String>> _mapPackageJars = new TreeMap<>(  );
+
+    /**
+     * Private constructor
+     */
+    private ClasspathIndex(  )
+    {
+    }
+
+    /**
+     * Builds the index of jars, reading them in parallel
+     * @param listJars The jars, with distinct names
+     * @param nThreads The maximum number of jars read at the same time
+     * @return The index
+     * @throws Exception if a jar could not be read
+     */
+    public static ClasspathIndex build( List<File> listJars, int nThreads ) throws Exception
+    {
+        ClasspathIndex index = new ClasspathIndex(  );
+        List<Set<String>> listDirectories = new ArrayList<>(  );
+        List<Set<String>> listPackages = new ArrayList<>(  );
+        List<ParallelTasks.Task> listTasks = new ArrayList<>(  );
+
+        for ( File jar : listJars )
+        {
+            Set<String> setDirectories = new TreeSet<>(  );
+            Set<String> setPackages = new TreeSet<>(  );
+            listDirectories.add( setDirectories );
+            listPackages.add( setPackages );
+            listTasks.add( (  ) -> readJar( jar, setDirectories, setPackages ) );
+        }
+
+        ParallelTasks.run( nThreads, listTasks );
+
+        for ( int i = 0; i < listJars.size(  ); i++ )
+        {
+            String strJar = listJars.get( i ).getName(  );
+            index._mapJarEntries.put( strJar, listDirectories.get( i ) );
+
+            for ( String strPackage : listPackages.get( i ) )
+            {
+                index._mapPackageJars.computeIfAbsent( strPackage, k -> new TreeSet<>(  ) ).add( strJar );
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the packages whose classes are in more than one jar
+     * @return The jars of each split package, by package name
+     */
+    public Map<String, Set<String>> getSplitPackages(  )
+    {
+        Map<String, Set<String>> mapSplitPackages = new TreeMap<>(  );
+
+        for ( Map.Entry<String, Set<String>> entry : _mapPackageJars.entrySet(  ) )
+        {
+            if ( entry.getValue(  ).size(  ) > 1 )
+            {
+                mapSplitPackages.put( entry.getKey(  ).replace( '/', '.' ), entry.getValue(  ) );
+            }
+        }
+
+        return mapSplitPackages;
+    }
+
+    /**
+     * Stores the index
+     * @param file The index file
+     * @throws IOException if the file could not be written
+     */
+    public void store( File file ) throws IOException
+    {
+        file.getParentFile(  ).mkdirs(  );
+
+        try ( Writer writer = Files.newBufferedWriter( file.toPath(  ), StandardCharsets.UTF_8 ) )
+        {
+            writer.write( HEADER + "\n\n" );
+
+            for ( Map.Entry<String, Set<String>> entry : _mapJarEntries.entrySet(  ) )
+            {
+                writer.write( entry.getKey(  ) + "\n" );
+
+                for ( String strEntry : entry.getValue(  ) )
+                {
+                    writer.write( strEntry + "\n" );
+                }
+
+                writer.write( "\n" );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indexed jars
+     * @return The number of jars
+     */
+    public int getJarCount(  )
+    {
+        return _mapJarEntries.size(  );
+    }
+
+    /**
+     * Reads the directories and packages of a jar
+     * @param jar The jar
+     * @param setDirectories The directories, and the root files
+     * @param setPackages The directories which contain classes
+     * @throws IOException if the jar could not be read
+     */
+    private static void readJar( File jar, Set<String> setDirectories, Set<String> setPackages ) throws IOException
+    {
+        try ( ZipFile zip = new ZipFile( jar ) )
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(  ); entries.hasMoreElements(  ); )
+            {
+                String strName = entries.nextElement(  ).getName(  );
+
+                if ( strName.startsWith( META_INF_PATH ) || strName.endsWith( "/" ) )
+                {
+                    continue;
+                }
+
+                int nIndex = strName.lastIndexOf( '/' );
+
+                if ( nIndex < 0 )
+                {
+                    // a root file
+                    setDirectories.add( strName );
+                }
+                else if ( nIndex > 0 )
+                {
+                    String strDirectory = strName.substring( 0, nIndex );
+                    setDirectories.add( strDirectory );
+
+                    if ( strName.endsWith( CLASS_EXTENSION ) )
+                    {
+                        setPackages.add( strDirectory );
+                    }
+                }
+            }
+        }
+    }
+}
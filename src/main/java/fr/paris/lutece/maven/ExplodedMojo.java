@@ -159,6 +159,8 @@ public class ExplodedMojo
             explodeWebapp( testWebappDirectory );
             explodeConfigurationFiles( testWebappDirectory );
             explodeSqlFiles(testWebappDirectory, targetDatabaseVendor);
+            writeClasspathIndex( testWebappDirectory );
+            writeJandexIndexes( testWebappDirectory );
         }
     }
 
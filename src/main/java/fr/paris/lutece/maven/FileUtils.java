@@ -49,6 +49,11 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -319,6 +324,105 @@ public class FileUtils
             }
     }
 
+    /**
+     * Copies a file to several destinations. The destinations without a line
+     * filter get a byte copy of the file, as with copyFileWithLineFilter, the
+     * others are written in a single read of the file, applying their filter to
+     * each line, with '\n' endings.
+     *
+     * @param sourceFile   the source file
+     * @param destinations the destination files (always written to), with the
+     *                     line filter to apply (null copies the file as is)
+     * @throws IOException if anything goes wrong
+     */
+    public static void copyFileWithLineFilters(Path sourceFile, Map<Path, Function<String, String>> destinations) throws IOException
+    {
+        Map<Path, Function<String, String>> filteredDestinations = new LinkedHashMap<>();
+        for (Map.Entry<Path, Function<String, String>> destination : destinations.entrySet())
+        {
+            if (destination.getValue() == null)
+                Files.copy(sourceFile, destination.getKey(), StandardCopyOption.REPLACE_EXISTING);
+            else
+                filteredDestinations.put(destination.getKey(), destination.getValue());
+        }
+        if (filteredDestinations.size() <= 1)
+        {
+            for (Map.Entry<Path, Function<String, String>> destination : filteredDestinations.entrySet())
+                copyFileWithLineFilter(sourceFile, destination.getKey(), destination.getValue());
+            return;
+        }
+        List<BufferedWriter> writers = new ArrayList<>();
+        List<Function<String, String>> linefilters = new ArrayList<>();
+        IOException exception = null;
+        try (Stream<String> lines = Files.lines(sourceFile))
+        {
+            for (Map.Entry<Path, Function<String, String>> destination : filteredDestinations.entrySet())
+            {
+                writers.add(Files.newBufferedWriter(destination.getKey()));
+                linefilters.add(destination.getValue());
+            }
+            for (String line : (Iterable<String>) lines::iterator)
+            {
+                for (int i = 0; i < writers.size(); i++)
+                {
+                    writers.get(i).append(linefilters.get(i).apply(line)).append('\n');
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            exception = e;
+        }
+        finally
+        {
+            // every writer is closed, the first failure is thrown with the others suppressed
+            for (BufferedWriter writer : writers)
+            {
+                try
+                {
+                    writer.close();
+                } catch (IOException e)
+                {
+                    if (exception == null)
+                        exception = e;
+                    else
+                        exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null)
+        {
+            throw exception;
+        }
+    }
+
+    /**
+     * Creates a temporary file next to a file about to be replaced, to be moved
+     * over it once written. The temporary file gets the POSIX permissions of the
+     * replaced file, or of the source file if the replaced file does not exist
+     * yet, instead of the owner-only permissions of temporary files.
+     *
+     * @param sourceFile      the file the content is read from
+     * @param destinationFile the file to replace
+     * @return the temporary file
+     * @throws IOException if anything goes wrong
+     */
+    public static Path createReplacementFile(Path sourceFile, Path destinationFile) throws IOException
+    {
+        Path tempFile = Files.createTempFile(destinationFile.toAbsolutePath().getParent(), destinationFile.getFileName().toString(), ".tmp");
+        Path original = Files.exists(destinationFile) ? destinationFile : sourceFile;
+        try
+        {
+            if (Files.getFileStore(tempFile).supportsFileAttributeView(PosixFileAttributeView.class))
+                Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(original));
+        } catch (IOException | RuntimeException e)
+        {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
     /**
      * Copy file from source to destination only if source is newer than the
      * target file. If <code>destinationDirectory</code> does not exist, it
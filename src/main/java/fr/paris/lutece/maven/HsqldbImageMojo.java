@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.archiver.Archiver;
+import org.hsqldb.jdbc.JDBCDriver;
+
+import fr.paris.lutece.maven.utils.sql.LineFilterReader;
+import fr.paris.lutece.maven.utils.sql.PluginSqlScripts;
+import fr.paris.lutece.maven.utils.sql.SqlStatementScanner;
+
+/**
+ * Builds a HSQLDB database from the create and init SQL scripts of an exploded
+ * webapp (lutece-core first, then the plugins), so that local and test
+ * startups begin with a ready database.
+ * <br>
+ * The scripts are translated for HSQLDB with the build.properties of the webapp
+ * and run against an embedded HSQLDB. The database files are written into the
+ * exploded webapp, whose WEB-INF/conf/db.properties is pointed at them, and may
+ * also be attached as a ZIP artifact.
+ * <br>
+ * The webapp must have been exploded before (<code>lutece:exploded</code>, or
+ * <code>lutece:exploded-webapp</code> which runs in an earlier phase).
+ */
+@Mojo( name = "hsqldb-image", defaultPhase = LifecyclePhase.PREPARE_PACKAGE )
+public class HsqldbImageMojo
+    extends AbstractLuteceWebappMojo
+{
+    private static final String HSQLDB = "hsqldb";
+    private static final String HSQLDB_URL_PREFIX = "jdbc:hsqldb:file:";
+    private static final String HSQLDB_URL_OPTIONS = ";hsqldb.write_delay=false";
+    private static final String HSQLDB_USER = "SA";
+    private static final String HSQLDB_SHUTDOWN = "SHUTDOWN COMPACT";
+    private static final String IMAGE_CLASSIFIER = "hsqldb";
+    private static final String HSQLDB_DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+    private static final String HSQLDB_CHECK_SQL = "VALUES (1)";
+    private static final String KEY_DRIVER = ".driver";
+    private static final String KEY_URL = ".url";
+    private static final String KEY_USER = ".user";
+    private static final String KEY_PASSWORD = ".password";
+    private static final String KEY_CHECK_SQL = ".checkvalidconnectionsql";
+
+    /**
+     * The exploded webapp holding the SQL scripts.
+     */
+    @Parameter( property = "hsqldbImage.webappDirectory", defaultValue = "${project.build.directory}/lutece" )
+    private File imageWebappDirectory;
+
+    /**
+     * The directory of the database files.
+     */
+    @Parameter( property = "hsqldbImage.directory", defaultValue = "${project.build.directory}/lutece/WEB-INF/hsqldb" )
+    private File imageDirectory;
+
+    /**
+     * The name of the database (the prefix of its files).
+     */
+    @Parameter( property = "hsqldbImage.name", defaultValue = "lutece" )
+    private String imageName;
+
+    /**
+     * Whether the database files are attached as a ZIP artifact, classified hsqldb.
+     */
+    @Parameter( property = "hsqldbImage.attach", defaultValue = "false" )
+    private boolean attach;
+
+    /**
+     * Whether a failing statement fails the build. Otherwise it is logged and the
+     * following statements are run.
+     */
+    @Parameter( property = "hsqldbImage.failOnError", defaultValue = "true" )
+    private boolean failOnError;
+
+    /**
+     * The connection pool of WEB-INF/conf/db.properties pointed at the database,
+     * empty to leave db.properties unchanged.
+     */
+    @Parameter( property = "hsqldbImage.pool", defaultValue = "portal" )
+    private String pool;
+
+    /**
+     * The name of the generated artifact.
+     */
+    @Parameter( property = "project.build.finalName", required = true )
+    private String finalName;
+
+    /**
+     * Project-helper instance, used to attach the ZIP artifact.
+     */
+    @Inject
+    private MavenProjectHelper projectHelper;
+
+    /**
+     * Executes the mojo on the current project.
+     *
+     * @throws MojoExecutionException
+     *             if an error occurred while building the database.
+     */
+    @Override
+    public void execute(  )
+                 throws MojoExecutionException, MojoFailureException
+    {
+        File sqlDirectory = new File( imageWebappDirectory, WEB_INF_SQL_PATH );
+
+        if ( !sqlDirectory.isDirectory(  ) )
+        {
+            throw new MojoExecutionException( "Could not find " + sqlDirectory.getAbsolutePath(  ) +
+                ", the webapp must be exploded first" );
+        }
+
+        try
+        {
+            org.codehaus.plexus.util.FileUtils.deleteDirectory( imageDirectory );
+            imageDirectory.mkdirs(  );
+
+            Function<String, String> filter = getSqlHelper( new File( sqlDirectory, "build.properties" ), HSQLDB )::filter;
+            List<String> listScripts = new ArrayList<>(  );
+
+            for ( PluginSqlScripts plugin : getSqlScriptsIndex( imageWebappDirectory ) )
+            {
+                listScripts.addAll( plugin.getCreateScripts(  ) );
+            }
+
+            String strUrl = HSQLDB_URL_PREFIX + new File( imageDirectory, imageName ).getAbsolutePath(  ).replace( File.separatorChar, '/' ) +
+                HSQLDB_URL_OPTIONS;
+            long lStart = System.currentTimeMillis(  );
+            int[] counts = runScripts( sqlDirectory, listScripts, filter, strUrl );
+            getLog(  ).info( "HSQLDB database " + imageName + " built in " + imageDirectory + " from " + listScripts.size(  ) +
+                " scripts : " + counts[0] + " statements, " + counts[1] + " errors, " +
+                ( System.currentTimeMillis(  ) - lStart ) + " ms" );
+
+            if ( ( pool != null ) && !pool.isEmpty(  ) )
+            {
+                updateDbProperties( strUrl );
+            }
+
+            if ( attach )
+            {
+                attachImage(  );
+            }
+        }
+        catch ( MojoExecutionException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Error building the HSQLDB database", e );
+        }
+    }
+
+    /**
+     * Runs the scripts against the embedded database, then shuts it down
+     *
+     * @param sqlDirectory the WEB-INF/sql directory
+     * @param listScripts the scripts, in execution order
+     * @param filter the translation of the scripts for HSQLDB
+     * @param strUrl the JDBC URL of the database
+     * @return the number of statements run and the number of errors
+     * @throws Exception if a statement failed and failOnError is set, or if an error occurred
+     */
+    private int[] runScripts( File sqlDirectory, List<String> listScripts, Function<String, String> filter, String strUrl )
+                      throws Exception
+    {
+        int[] counts = new int[2];
+        Properties info = new Properties(  );
+        info.setProperty( "user", HSQLDB_USER );
+        info.setProperty( "password", "" );
+
+        try ( Connection connection = new JDBCDriver(  ).connect( strUrl, info );
+                Statement statement = connection.createStatement(  ) )
+        {
+            connection.setAutoCommit( true );
+
+            for ( String strScript : listScripts )
+            {
+                File script = new File( sqlDirectory, strScript.substring( SQL_PATH_PREFIX.length(  ) ) );
+                getLog(  ).debug( "Running " + strScript );
+
+                try ( Reader reader = new LineFilterReader( new BufferedReader( new InputStreamReader(
+                                    Files.newInputStream( script.toPath(  ) ), StandardCharsets.UTF_8 ) ), filter ) )
+                {
+                    SqlStatementScanner.scan( reader, new SqlStatementScanner.Handler(  )
+                        {
+                            @Override
+                            public void statement( String strStatement )
+                                           throws IOException
+                            {
+                                String strSql = strStatement.substring( 0, strStatement.length(  ) - 1 ).trim(  );
+
+                                try
+                                {
+                                    statement.execute( strSql );
+                                    counts[0]++;
+                                }
+                                catch ( SQLException e )
+                                {
+                                    counts[1]++;
+
+                                    if ( failOnError )
+                                    {
+                                        throw new IOException( "Error in " + strScript + " : " + e.getMessage(  ) +
+                                            "\n" + strSql, e );
+                                    }
+
+                                    getLog(  ).warn( "Error in " + strScript + " : " + e.getMessage(  ) );
+                                }
+                            }
+
+                            @Override
+                            public void text( String strText )
+                            {
+                                // blanks and comments
+                            }
+                        } );
+                }
+            }
+
+            statement.execute( HSQLDB_SHUTDOWN );
+        }
+
+        return counts;
+    }
+
+    /**
+     * Points the connection pool of the exploded WEB-INF/conf/db.properties at the
+     * database, keeping the other lines of the file
+     *
+     * @param strUrl the JDBC URL of the database
+     * @throws IOException if db.properties could not be rewritten
+     */
+    private void updateDbProperties( String strUrl ) throws IOException
+    {
+        File dbProperties = new File( imageWebappDirectory, WEB_INF_DB_PROPERTIES_PATH );
+
+        if ( !dbProperties.isFile(  ) )
+        {
+            getLog(  ).warn( "Could not find " + dbProperties.getAbsolutePath(  ) + ", the connection pool " + pool +
+                " must be pointed at " + strUrl + " manually" );
+
+            return;
+        }
+
+        Map<String, String> mapValues = new LinkedHashMap<>(  );
+        mapValues.put( pool + KEY_DRIVER, HSQLDB_DRIVER );
+        mapValues.put( pool + KEY_URL, strUrl );
+        mapValues.put( pool + KEY_USER, HSQLDB_USER );
+        mapValues.put( pool + KEY_PASSWORD, "" );
+        mapValues.put( pool + KEY_CHECK_SQL, HSQLDB_CHECK_SQL );
+
+        // db.properties is ISO-8859-1, the lines of the other pools are kept as they are
+        List<String> listLines = new ArrayList<>(  );
+
+        for ( String strLine : Files.readAllLines( dbProperties.toPath(  ), StandardCharsets.ISO_8859_1 ) )
+        {
+            int nSeparator = strLine.indexOf( '=' );
+            String strKey = ( nSeparator == -1 ) ? null : strLine.substring( 0, nSeparator ).trim(  );
+
+            if ( ( strKey != null ) && mapValues.containsKey( strKey ) )
+            {
+                listLines.add( strKey + "=" + mapValues.remove( strKey ) );
+            }
+            else
+            {
+                listLines.add( strLine );
+            }
+        }
+
+        for ( Map.Entry<String, String> entry : mapValues.entrySet(  ) )
+        {
+            listLines.add( entry.getKey(  ) + "=" + entry.getValue(  ) );
+        }
+
+        Files.write( dbProperties.toPath(  ), listLines, StandardCharsets.ISO_8859_1 );
+        getLog(  ).info( "Connection pool " + pool + " of " + WEB_INF_DB_PROPERTIES_PATH + " pointed at the HSQLDB database" );
+    }
+
+    /**
+     * Zips the database files and attaches them to the project
+     *
+     * @throws Exception if the ZIP could not be built
+     */
+    private void attachImage(  ) throws Exception
+    {
+        File imageZip = new File( outputDirectory, finalName + "-" + IMAGE_CLASSIFIER + ".zip" );
+        Archiver zipArchiver = archiverManager.getArchiver( "zip" );
+        zipArchiver.setDestFile( imageZip );
+        zipArchiver.addDirectory( imageDirectory, new String[] { INCLUDE_PATTERN_ALL }, null );
+        zipArchiver.createArchive(  );
+        projectHelper.attachArtifact( project, "zip", IMAGE_CLASSIFIER, imageZip );
+        getLog(  ).info( "HSQLDB database attached as " + imageZip.getName(  ) );
+    }
+}
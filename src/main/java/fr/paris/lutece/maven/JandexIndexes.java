@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jboss.jandex.Index;
+import org.jboss.jandex.IndexWriter;
+import org.jboss.jandex.Indexer;
+
+/**
+ * Builds Jandex indexes of the classes of a project or of jars, so that a
+ * CDI container reads the annotations and the class hierarchy from one index
+ * instead of parsing every class file at startup.
+ * <br>
+ * An index built by the package goal is stored in the jar, in
+ * META-INF/jandex.idx. The jars of a webapp without such an index get an
+ * external index, in WEB-INF/jandex/&lt;jar name&gt;.idx.
+ */
+public final class JandexIndexes
+{
+    public static final String JAR_INDEX_PATH = "META-INF/jandex.idx";
+    public static final String WEBAPP_INDEXES_PATH = "WEB-INF/jandex/";
+    public static final String INDEX_EXTENSION = ".idx";
+
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String VERSIONS_PATH = "META-INF/versions/";
+
+    /**
+     * Private constructor
+     */
+    private JandexIndexes(  )
+    {
+    }
+
+    /**
+     * Indexes the classes of a directory
+     * @param classesDirectory The directory
+     * @return The index
+     * @throws IOException if a class file could not be read
+     */
+    public static Index indexDirectory( File classesDirectory ) throws IOException
+    {
+        Indexer indexer = new Indexer(  );
+        List<Path> listClasses;
+
+        try ( Stream<Path> paths = Files.walk( classesDirectory.toPath(  ) ) )
+        {
+            listClasses = paths.filter( path -> path.toString(  ).endsWith( CLASS_EXTENSION ) ).sorted(  )
+                               .collect( Collectors.toList(  ) );
+        }
+
+        for ( Path path : listClasses )
+        {
+            try ( InputStream in = Files.newInputStream( path ) )
+            {
+                indexer.index( in );
+            }
+        }
+
+        return indexer.complete(  );
+    }
+
+    /**
+     * Indexes the classes of a jar, unless it holds its own index
+     * @param jar The jar
+     * @return The index, or null if the jar is already indexed
+     * @throws IOException if the jar could not be read
+     */
+    public static Index indexJar( File jar ) throws IOException
+    {
+        Indexer indexer = new Indexer(  );
+
+        try ( ZipFile zip = new ZipFile( jar ) )
+        {
+            if ( zip.getEntry( JAR_INDEX_PATH ) != null )
+            {
+                return null;
+            }
+
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(  ); entries.hasMoreElements(  ); )
+            {
+                ZipEntry entry = entries.nextElement(  );
+
+                // the classes for other java versions would replace the main ones
+                if ( entry.getName(  ).endsWith( CLASS_EXTENSION ) && !entry.getName(  ).startsWith( VERSIONS_PATH ) )
+                {
+                    try ( InputStream in = zip.getInputStream( entry ) )
+                    {
+                        indexer.index( in );
+                    }
+                }
+            }
+        }
+
+        return indexer.complete(  );
+    }
+
+    /**
+     * Writes the external indexes of the jars of a webapp, the jars being
+     * indexed in parallel. The jars which can't be indexed are skipped.
+     * @param listJars The jars
+     * @param webappDirectory The webapp directory
+     * @param nThreads The maximum number of jars indexed at the same time
+     * @return The jars which could not be indexed, with the reason
+     * @throws Exception if an index could not be written
+     */
+    public static List<String> writeWebappIndexes( List<File> listJars, File webappDirectory, int nThreads )
+        throws Exception
+    {
+        File indexesDirectory = new File( webappDirectory, WEBAPP_INDEXES_PATH );
+        org.codehaus.plexus.util.FileUtils.deleteDirectory( indexesDirectory );
+
+        List<String> listErrors = new ArrayList<>(  );
+        List<ParallelTasks.Task> listTasks = new ArrayList<>(  );
+
+        for ( File jar : listJars )
+        {
+            listTasks.add( (  ) ->
+                {
+                    Index index;
+
+                    try
+                    {
+                        index = indexJar( jar );
+                    }
+                    catch ( IOException | RuntimeException e )
+                    {
+                        synchronized ( listErrors )
+                        {
+                            listErrors.add( jar.getName(  ) + " : " + e.getMessage(  ) );
+                        }
+
+                        return;
+                    }
+
+                    if ( index != null )
+                    {
+                        write( index, new File( indexesDirectory, jar.getName(  ) + INDEX_EXTENSION ) );
+                    }
+                } );
+        }
+
+        ParallelTasks.run( nThreads, listTasks );
+
+        return listErrors;
+    }
+
+    /**
+     * Writes an index
+     * @param index The index
+     * @param file The index file
+     * @throws IOException if the file could not be written
+     */
+    public static void write( Index index, File file ) throws IOException
+    {
+        file.getParentFile(  ).mkdirs(  );
+
+        try ( OutputStream out = Files.newOutputStream( file.toPath(  ) ) )
+        {
+            new IndexWriter( out ).write( index );
+        }
+    }
+}
@@ -36,19 +36,40 @@ package fr.paris.lutece.maven;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Execute;
@@ -56,8 +77,11 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.w3c.dom.Document;
 
+import fr.paris.lutece.maven.utils.sql.SqlChangeSetSplitter;
 import fr.paris.lutece.utils.sql.PluginVersion;
 import fr.paris.lutece.utils.sql.SqlPathInfo;
 
@@ -84,9 +108,22 @@ public class LiquiBaseSqlMojo extends AbstractLuteceWebappMojo
     private static final String LIQUIBASE_SQL_HEADER_2 = "--liquibase formatted sql";
 
     private static final String EOL = "\n";
-    private static final String SQL_DIRECTORY = "./src/sql";
-    private static final String TARGET_DIRECTORY = "./target/liquibasesql/";
-    private static final String PLUGIN_CONF_DIRECTORY = "./webapp/WEB-INF/plugins";
+    private static final String SQL_DIRECTORY = "sql";
+    private static final String TARGET_DIRECTORY = "liquibasesql";
+    private static final String PLUGIN_CONF_DIRECTORY = "WEB-INF/plugins";
+    private static final String STATE_FILE = "liquibase-sql-state.properties";
+    // the key of the settings the files of the state file were processed with
+    private static final String STATE_KEY_SETTINGS = "settings";
+    // the default directories of the modules processed in aggregate mode, when their configuration does not override them
+    private static final String MODULE_SQL_DIRECTORY = "src/sql";
+    private static final String MODULE_WEBAPP_DIRECTORY = "webapp";
+    private static final String PARAMETER_SQL_DIRECTORY = "sqlDirectory";
+    private static final String PARAMETER_WEBAPP_DIRECTORY = "webappSourceDirectory";
+    private static final String PLUGIN_KEY = "fr.paris.lutece.tools:lutece-maven-plugin";
+    private static final String GOAL_LIQUIBASE_SQL = "liquibase-sql";
+
+    private static final Pattern PATTERN_SQL_ORDERS = Pattern.compile("\\b(SELECT|INSERT|UPDATE|DELETE|CREATE|ALTER|DROP|TRUNCATE|GRANT|REVOKE)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN_LIQUIBASE_COMMENTS = Pattern.compile("(?m)^--(?=liquibase formatted sql|changeset|preconditions)");
    
     /**
      * Dry run creates files in target instead of replacing
@@ -94,51 +131,82 @@ public class LiquiBaseSqlMojo extends AbstractLuteceWebappMojo
     @Parameter(property = "dryRun", defaultValue = "false")
     private boolean dryRun;
 
-    // default values for core : we suppose that the version is always good
-    private String pluginName = CORE, version = null;
-    // track most recent version number in update script
-    private PluginVersion mostRecentSqlScriptVersion = null;
+    /**
+     * When true, the goal run on the execution root processes the SQL files of
+     * all the reactor modules concurrently (with the SQL and webapp directories
+     * configured for this goal in each module, and their build directory) and
+     * prints one report. The other modules are skipped.
+     */
+    @Parameter(property = "liquibaseSql.aggregate", defaultValue = "false")
+    private boolean aggregate;
+
+    /**
+     * When greater than 0, untagged files are tagged as several changesets of at
+     * most this number of statements, with ids file.sql, file.sql-2, file.sql-3...
+     */
+    @Parameter(property = "liquibaseSql.changeSetMaxStatements", defaultValue = "0")
+    private int changeSetMaxStatements;
+
+    /**
+     * When greater than 0, untagged files are tagged as several changesets of
+     * about this number of bytes, with ids file.sql, file.sql-2, file.sql-3...
+     */
+    @Parameter(property = "liquibaseSql.changeSetMaxBytes", defaultValue = "0")
+    private long changeSetMaxBytes;
 
     public void execute() throws MojoExecutionException, MojoFailureException
     {
-        try
+        List<SqlTreeProcessor> processors = new ArrayList<>();
+        if (!aggregate)
         {
-            processPluginXmls();
-            processSqlFiles();
-            if (!CORE.equals(pluginName))
+            processors.add(new SqlTreeProcessor(project.getArtifactId(), sqlDirectory, new File(webappSourceDirectory, PLUGIN_CONF_DIRECTORY), outputDirectory));
+        }
+        else if (project.isExecutionRoot())
+        {
+            Set<File> baseDirectories = new HashSet<>();
+            for (MavenProject reactorProject : reactorProjects)
             {
-                getLog().info("Detected version is " + version + " for plugin " + pluginName + ". Please correct it if needed.");
-                PluginVersion pluginVersion = PluginVersion.of(version);
-                if (mostRecentSqlScriptVersion != null && mostRecentSqlScriptVersion.compareTo(pluginVersion) > 0)
-                    getLog().error("Some SQL files have version " + mostRecentSqlScriptVersion + " for plugin " + pluginName + " with version " + version);
+                File basedir = reactorProject.getBasedir();
+                if (basedir == null || !baseDirectories.add(basedir))
+                {
+                    continue;
+                }
+                File moduleSqlDirectory = getModuleDirectory(reactorProject, PARAMETER_SQL_DIRECTORY, MODULE_SQL_DIRECTORY);
+                if (moduleSqlDirectory.isDirectory())
+                {
+                    File moduleWebappDirectory = getModuleDirectory(reactorProject, PARAMETER_WEBAPP_DIRECTORY, MODULE_WEBAPP_DIRECTORY);
+                    processors.add(new SqlTreeProcessor(reactorProject.getArtifactId(), moduleSqlDirectory,
+                            new File(moduleWebappDirectory, PLUGIN_CONF_DIRECTORY), new File(reactorProject.getBuild().getDirectory())));
+                }
             }
-        } catch (IOException e)
+        }
+        else
         {
-            getLog().error("An error occurred while processing SQL files.", e);
-            throw new MojoExecutionException("Failed to process SQL files.", e);
+            getLog().info("SQL files already processed from the execution root");
+            return;
         }
-    }
 
-    private void processPluginXmls() throws IOException
-    {
-        // Supposes there will always be only one XML file.
-        try (Stream<Path> filePathStream = Files.walk(Paths.get(PLUGIN_CONF_DIRECTORY)))
+        // trees are independent from each other
+        List<String> failures = processors.parallelStream().map(SqlTreeProcessor::process).filter(strError -> strError != null)
+                .collect(Collectors.toList());
+
+        if (processors.size() > 1)
         {
-            filePathStream.filter(pluginFileFilter).findAny().ifPresent(this::processPluginXml);
+            getLog().info("liquibase-sql report :");
+            processors.forEach(processor -> getLog().info(" - " + processor.getReport()));
         }
-    }
-
-    private void processPluginXml(Path path)
-    {
-        try
+        for (SqlTreeProcessor processor : processors)
         {
-            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = builder.parse(path.toFile());
-            version = doc.getElementsByTagName("version").item(0).getTextContent();
-            pluginName = doc.getElementsByTagName("name").item(0).getTextContent();
-        } catch (Exception e)
+            processor.logVersionCheck();
+        }
+        if (!failures.isEmpty())
         {
-            throw new RuntimeException(e);
+            throw new MojoExecutionException("Failed to process SQL files of " + String.join(", ", failures));
+        }
+        int schemaFindings = processors.stream().mapToInt(processor -> processor.schemaFindings).sum();
+        if (schemaFindings > 0 && sqlAdvisorFailOnFindings)
+        {
+            throw new MojoFailureException(schemaFindings + " issues found in the SQL schema, see " + SQL_SCHEMA_REPORT_FILE);
         }
     }
 
@@ -157,12 +225,15 @@ public class LiquiBaseSqlMojo extends AbstractLuteceWebappMojo
         }
     }
 
-    private void processSqlFiles() throws IOException
+    /**
+     * Returns the state of a file (size and modification time)
+     * @param path the file
+     * @return the state
+     * @throws IOException if the file attributes could not be read
+     */
+    private static String getFileState(Path path) throws IOException
     {
-        try (Stream<Path> filePathStream = Files.walk(Paths.get(SQL_DIRECTORY)))
-        {
-            filePathStream.filter(sqlFileFilter).forEach(this::transformFile);
-        }
+        return Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
     }
 
     /**
@@ -198,117 +269,126 @@ public class LiquiBaseSqlMojo extends AbstractLuteceWebappMojo
     }
 
     /**
-     * Prepends liquibase tags at the beginning of the given SQL file, it not present
-     * 
-     * @param path an SQL file to be processed
+     * Returns a directory of a module processed in aggregate mode, as configured for this goal
+     * in the module (execution, then plugin configuration, then project property),
+     * or its default location
+     * @param reactorProject the module
+     * @param strParameter the name of the parameter of the directory
+     * @param strDefault the default directory, relative to the module base directory
+     * @return the directory
      */
-    private void transformFile(Path path)
+    private static File getModuleDirectory(MavenProject reactorProject, String strParameter, String strDefault)
     {
-        try
+        String strValue = null;
+        Plugin plugin = reactorProject.getPlugin(PLUGIN_KEY);
+        if (plugin != null)
         {
-            if (!CORE.equals(pluginName))
+            for (PluginExecution execution : plugin.getExecutions())
             {
-                getLog().info("path " + path);
-                SqlPathInfo sqlPath = SqlPathInfo.parse(normalizeWebappPath(path.toString()).substring(6));// remove leading "./src/"
-                if (!sqlPath.isCreate())
+                if (strValue == null && execution.getGoals().contains(GOAL_LIQUIBASE_SQL))
                 {
-                    if (sqlPath.getDstVersion() != null
-                            && (mostRecentSqlScriptVersion == null || mostRecentSqlScriptVersion.compareTo(sqlPath.getDstVersion()) < 0))
-                        mostRecentSqlScriptVersion = sqlPath.getDstVersion();
+                    strValue = getConfigurationValue(execution.getConfiguration(), strParameter);
                 }
             }
-            // we suppose that all SQL files are UTF-8.
-            // if that's not the case, we need a way to get that info for EACH input file
-            String content = readString(path);
-            if(content.trim().isEmpty()||!containsSqlOrders(content))
+            if (strValue == null)
             {
-                getLog().info("Ignoring file without SQL commands: " + path);
+                strValue = getConfigurationValue(plugin.getConfiguration(), strParameter);
             }
-            else if (!isTaggedWithLiquibase(content))
-            {
-                StringBuilder result = new StringBuilder();
-                result.append(LIQUIBASE_SQL_HEADER).append(EOL);
-                result.append("-- changeset ").append(pluginName).append(":").append(path.getFileName()).append(EOL);
-                result.append("-- preconditions onFail:MARK_RAN onError:WARN").append(EOL);
-                result.append(content);
-                Path outputPath = generateOutputPath(path);
-                getLog().info("Writing tag+content to file " + outputPath);
-                Files.write(outputPath, result.toString().getBytes(StandardCharsets.UTF_8));
-            }else if(needsFixing(content))
-            {
-            	String fixedContent= fixLiquibaseComments(content);
-                Path outputPath = generateOutputPath(path);
-                Files.write(outputPath, fixedContent.getBytes(StandardCharsets.UTF_8));
-                getLog().info("Fixing formatting in Liquibase file: " + path);
-            }
-            else
-            {
-                getLog().info("File already in Liquibase format, ignoring: " + path);
-            }
-        } catch (Exception e)
+        }
+        if (strValue == null)
         {
-            getLog().error("Error processing file: " + path.getFileName(), e);
-            throw new RuntimeException(e);
+            strValue = reactorProject.getProperties().getProperty(strParameter);
         }
+        File directory = new File(strValue != null ? strValue : strDefault);
+        return directory.isAbsolute() ? directory : new File(reactorProject.getBasedir(), directory.getPath());
     }
-    /** 
-     * re-implementation of Files.readString (jdk11+), which does not exist in JDK8
-     * @throws IOException 
-     * */
-    private static String readString(Path path) throws IOException {
-        byte[] bytes = Files.readAllBytes(path);
-        return new String(bytes, StandardCharsets.UTF_8);
-    }
-
-    private Path generateOutputPath(Path inputPath) throws IOException
-    {
-        String subPathSqlFile = dryRun ? TARGET_DIRECTORY + inputPath.subpath(3, inputPath.getNameCount())
-                : SQL_DIRECTORY + "/" + inputPath.subpath(3, inputPath.getNameCount());
 
-        Path outputPath = Paths.get(subPathSqlFile);
-        Files.createDirectories(outputPath.getParent());
-        return outputPath;
-    }
-    
     /**
-     * Normalizes the Webapp Path
-     *
-     * @param strPath
-     *            The path to normalize
-     * @return The normalized path
+     * Returns the value of a parameter of a plugin configuration
+     * @param configuration the configuration, may be null
+     * @param strParameter the name of the parameter
+     * @return the value, null if the parameter is not configured
      */
-    private static String normalizeWebappPath( String strPath )
+    private static String getConfigurationValue(Object configuration, String strParameter)
     {
-        String strNormalized = strPath;
-
-        // For windows, remove the leading \
-        if ( ( strNormalized.length( ) > 3 ) && ( strNormalized.indexOf( ':' ) == 2 ) )
+        if (configuration instanceof Xpp3Dom)
         {
-            strNormalized = strNormalized.substring( 1 );
+            Xpp3Dom child = ((Xpp3Dom) configuration).getChild(strParameter);
+            if (child != null && child.getValue() != null && !child.getValue().isBlank())
+            {
+                return child.getValue().trim();
+            }
         }
+        return null;
+    }
 
-        // convert Windows path separator if present
-        strNormalized = substitute( strNormalized, "/", "\\" );
-
-        // remove the ending separator if present
-        if ( strNormalized.endsWith( "/" ) )
+    /**
+     * Writes the header followed by the content of the SQL file, the content being
+     * transferred at the channel level. The output may be the SQL file itself.
+     * @param path the SQL file
+     * @param outputPath the output file
+     * @param header the header to prepend
+     * @throws IOException if an I/O error occurs
+     */
+    private static void prependHeader(Path path, Path outputPath, String header) throws IOException
+    {
+        Path tempFile = FileUtils.createReplacementFile(path, outputPath);
+        try
+        {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE))
+            {
+                ByteBuffer buffer = ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining())
+                {
+                    out.write(buffer);
+                }
+                long position = 0, size = in.size();
+                while (position < size)
+                {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+            Files.move(tempFile, outputPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally
         {
-            strNormalized = strNormalized.substring( 0, strNormalized.length( ) - 1 );
+            Files.deleteIfExists(tempFile);
         }
-
-        return strNormalized;
     }
+
     /**
-     * fix Liquibase Comments
-     * @param content the content to fix
-     * @return the content fixed
+     * fix Liquibase Comments, line by line, keeping the line terminators.
+     * The output may be the SQL file itself.
+     * @param path the SQL file to fix
+     * @param outputPath the fixed file
+     * @throws IOException if an I/O error occurs
      */
-    private String fixLiquibaseComments(String content)
+    private static void fixLiquibaseComments(Path path, Path outputPath) throws IOException
     {
-        return content
-                .replaceAll("(?m)^--(?=liquibase formatted sql)", "-- ")
-                .replaceAll("(?m)^--(?=changeset)", "-- ")
-                .replaceAll("(?m)^--(?=preconditions)", "-- ");
+        Path tempFile = FileUtils.createReplacementFile(path, outputPath);
+        try
+        {
+            try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+                    Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8))
+            {
+                StringBuilder line = new StringBuilder();
+                int c;
+                while ((c = reader.read()) != -1)
+                {
+                    line.append((char) c);
+                    if (c == '\n')
+                    {
+                        writer.write(PATTERN_LIQUIBASE_COMMENTS.matcher(line).replaceAll("-- "));
+                        line.setLength(0);
+                    }
+                }
+                writer.write(PATTERN_LIQUIBASE_COMMENTS.matcher(line).replaceAll("-- "));
+            }
+            Files.move(tempFile, outputPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally
+        {
+            Files.deleteIfExists(tempFile);
+        }
     }
     /**
      * Checks whether the content contains incorrectly formatted Liquibase comments.
@@ -321,13 +401,12 @@ public class LiquiBaseSqlMojo extends AbstractLuteceWebappMojo
      *   <li>--preconditions</li>
      * </ul>
      *
-     * @param content The content of the SQL file
+     * @param content The content of the SQL file, or one of its lines
      * @return true if formatting needs to be fixed; false if already properly formatted
      */
-    private boolean needsFixing(String content)
+    private static boolean needsFixing(String content)
     {
-        Pattern pattern = Pattern.compile("(?m)^--(?=liquibase formatted sql|changeset|preconditions)");
-        Matcher matcher = pattern.matcher(content);
+        Matcher matcher = PATTERN_LIQUIBASE_COMMENTS.matcher(content);
         return matcher.find();
     }
 
@@ -371,12 +450,8 @@ public class LiquiBaseSqlMojo extends AbstractLuteceWebappMojo
      * @return true if any SQL order is found; false otherwise
      */
     public static boolean containsSqlOrders(String content) {
-        // Liste de mots-clés SQL à rechercher
-        String regex = "\\b(SELECT|INSERT|UPDATE|DELETE|CREATE|ALTER|DROP|TRUNCATE|GRANT|REVOKE)\\b";
-        
-        // Insensible à la casse
-        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(content);
+        // Insensible à la casse, mots entiers uniquement
+        Matcher matcher = PATTERN_SQL_ORDERS.matcher(content);
 
         return matcher.find();
     }
@@ -400,4 +475,317 @@ public class LiquiBaseSqlMojo extends AbstractLuteceWebappMojo
          return candidate.getPath().substring(strBasePath.length()-3 );
    } 
 
+    /**
+     * Processes the SQL tree of one module
+     */
+    private class SqlTreeProcessor
+    {
+        private final String name;
+        private final Path sqlRoot;
+        private final Path pluginConfRoot;
+        private final Path targetRoot;
+        private final Path stateFile;
+        private final File schemaReport;
+        private int schemaFindings;
+        // default values for core : we suppose that the version is always good
+        private String pluginName = CORE, version = null;
+        // track most recent version number in update script, files are processed concurrently
+        private final AtomicReference<PluginVersion> mostRecentSqlScriptVersion = new AtomicReference<>();
+        // size and modification time of the files found in Liquibase format by the previous run with the same settings
+        private final Map<String, String> sqlFileStates = new ConcurrentHashMap<>();
+        private final AtomicInteger taggedFiles = new AtomicInteger(), fixedFiles = new AtomicInteger(), ignoredFiles = new AtomicInteger(), unchangedFiles = new AtomicInteger();
+
+        SqlTreeProcessor(String name, File sqlRoot, File pluginConfRoot, File outputRoot)
+        {
+            this.name = name;
+            this.sqlRoot = sqlRoot.toPath();
+            this.pluginConfRoot = pluginConfRoot.toPath();
+            this.targetRoot = new File(outputRoot, TARGET_DIRECTORY).toPath();
+            this.stateFile = new File(outputRoot, STATE_FILE).toPath();
+            this.schemaReport = new File(outputRoot, SQL_SCHEMA_REPORT_FILE);
+        }
+
+        /**
+         * Processes the tree
+         * @return null if the tree was processed, its name otherwise
+         */
+        String process()
+        {
+            try
+            {
+                processPluginXmls();
+                processSqlFiles();
+                if (sqlAdvisor)
+                    schemaFindings = adviseSqlSchema(sqlRoot.toFile(), schemaReport, name);
+                return null;
+            } catch (Exception e)
+            {
+                getLog().error("An error occurred while processing SQL files of " + name, e);
+                return name;
+            }
+        }
+
+        String getReport()
+        {
+            return name + " : " + taggedFiles + " tagged, " + fixedFiles + " fixed, " + ignoredFiles + " already in Liquibase format or without SQL commands, "
+                    + unchangedFiles + " unchanged since the previous run, "
+                    + schemaFindings + " schema issues";
+        }
+
+        void logVersionCheck()
+        {
+            if (!CORE.equals(pluginName))
+            {
+                getLog().info("Detected version is " + version + " for plugin " + pluginName + ". Please correct it if needed.");
+                PluginVersion pluginVersion = PluginVersion.of(version);
+                PluginVersion sqlScriptVersion = mostRecentSqlScriptVersion.get();
+                if (sqlScriptVersion != null && sqlScriptVersion.compareTo(pluginVersion) > 0)
+                    getLog().error("Some SQL files have version " + sqlScriptVersion + " for plugin " + pluginName + " with version " + version);
+            }
+        }
+
+        private void processPluginXmls() throws IOException
+        {
+            if (!Files.isDirectory(pluginConfRoot))
+            {
+                return;
+            }
+            // Supposes there will always be only one XML file.
+            try (Stream<Path> filePathStream = Files.walk(pluginConfRoot))
+            {
+                filePathStream.filter(pluginFileFilter).findAny().ifPresent(this::processPluginXml);
+            }
+        }
+
+        private void processPluginXml(Path path)
+        {
+            try
+            {
+                DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+                Document doc = builder.parse(path.toFile());
+                version = doc.getElementsByTagName("version").item(0).getTextContent();
+                pluginName = doc.getElementsByTagName("name").item(0).getTextContent();
+            } catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void processSqlFiles() throws IOException
+        {
+            List<Path> sqlFiles;
+            try (Stream<Path> filePathStream = Files.walk(sqlRoot))
+            {
+                sqlFiles = filePathStream.filter(sqlFileFilter).collect(Collectors.toList());
+            }
+            boolean useState = incrementalSql && !dryRun;
+            if (useState)
+            {
+                loadSqlFileStates();
+            }
+            // files are independent from each other
+            sqlFiles.parallelStream().forEach(this::transformFile);
+            if (useState)
+            {
+                // the files deleted since the previous run are forgotten
+                Set<String> setRelativePaths = sqlFiles.stream().map(this::getRelativePath).collect(Collectors.toSet());
+                sqlFileStates.keySet().retainAll(setRelativePaths);
+                storeSqlFileStates();
+            }
+        }
+
+        /**
+         * Returns the settings of the goal which change the processing of the files
+         * @return the settings
+         */
+        private String getSettings()
+        {
+            return "changeSetMaxStatements=" + changeSetMaxStatements + ",changeSetMaxBytes=" + changeSetMaxBytes;
+        }
+
+        /**
+         * Loads the state of the SQL files found in Liquibase format by the previous run,
+         * unless the settings changed since then
+         * @throws IOException if the state file could not be read
+         */
+        private void loadSqlFileStates() throws IOException
+        {
+            if (Files.exists(stateFile))
+            {
+                Properties properties = new Properties();
+                try (InputStream in = Files.newInputStream(stateFile))
+                {
+                    properties.load(in);
+                }
+                if (!getSettings().equals(properties.getProperty(STATE_KEY_SETTINGS)))
+                {
+                    getLog().info("Settings changed since the previous run, all SQL files of " + name + " will be processed");
+                    return;
+                }
+                properties.remove(STATE_KEY_SETTINGS);
+                properties.stringPropertyNames().forEach(key -> sqlFileStates.put(key, properties.getProperty(key)));
+            }
+        }
+
+        /**
+         * Stores the state of the SQL files found in Liquibase format by this run
+         * @throws IOException if the state file could not be written
+         */
+        private void storeSqlFileStates() throws IOException
+        {
+            Files.createDirectories(stateFile.getParent());
+            Properties properties = new Properties();
+            properties.putAll(new TreeMap<>(sqlFileStates));
+            properties.setProperty(STATE_KEY_SETTINGS, getSettings());
+            try (OutputStream out = Files.newOutputStream(stateFile))
+            {
+                properties.store(out, "Generated file - do not edit");
+            }
+        }
+
+        /**
+         * Prepends liquibase tags at the beginning of the given SQL file, it not present
+         * 
+         * @param path an SQL file to be processed
+         */
+        private void transformFile(Path path)
+        {
+            try
+            {
+                String strRelativePath = getRelativePath(path);
+                if (!CORE.equals(pluginName))
+                {
+                    getLog().info("path " + path);
+                    SqlPathInfo sqlPath = SqlPathInfo.parse(SQL_DIRECTORY + "/" + strRelativePath);
+                    if (sqlPath != null && !sqlPath.isCreate())
+                    {
+                        if (sqlPath.getDstVersion() != null)
+                            mostRecentSqlScriptVersion.accumulateAndGet(sqlPath.getDstVersion(),
+                                    (current, candidate) -> current == null || current.compareTo(candidate) < 0 ? candidate : current);
+                    }
+                }
+                String strState = getFileState(path);
+                if (strState.equals(sqlFileStates.get(strRelativePath)))
+                {
+                    getLog().debug("File unchanged since the previous run, ignoring: " + path);
+                    unchangedFiles.incrementAndGet();
+                    return;
+                }
+                // we suppose that all SQL files are UTF-8.
+                // if that's not the case, we need a way to get that info for EACH input file
+                // the file is scanned line by line, and only as far as needed to decide
+                boolean tagged = false, sqlOrders = false, needsFixing = false;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)))
+                {
+                    String line = reader.readLine();
+                    tagged = line != null && isTaggedWithLiquibase(line);
+                    while (line != null && !(sqlOrders && (!tagged || needsFixing)))
+                    {
+                        sqlOrders = sqlOrders || containsSqlOrders(line);
+                        needsFixing = needsFixing || (tagged && needsFixing(line));
+                        line = reader.readLine();
+                    }
+                }
+                if(!sqlOrders)
+                {
+                    getLog().info("Ignoring file without SQL commands: " + path);
+                    sqlFileStates.put(strRelativePath, strState);
+                    ignoredFiles.incrementAndGet();
+                }
+                else if (!tagged)
+                {
+                    Path outputPath = generateOutputPath(strRelativePath);
+                    getLog().info("Writing tag+content to file " + outputPath);
+                    SqlChangeSetSplitter splitter = new SqlChangeSetSplitter(changeSetMaxStatements, changeSetMaxBytes);
+                    if (splitter.isEnabled())
+                    {
+                        int nChangeSets = splitChangeSets(splitter, path, outputPath);
+                        if (nChangeSets > 1)
+                            getLog().info("Split " + path.getFileName() + " into " + nChangeSets + " changesets");
+                    }
+                    else
+                    {
+                        prependHeader(path, outputPath, LIQUIBASE_SQL_HEADER + EOL + getChangeSetHeader(path.getFileName().toString()));
+                    }
+                    taggedFiles.incrementAndGet();
+                }else if(needsFixing)
+                {
+                    Path outputPath = generateOutputPath(strRelativePath);
+                    fixLiquibaseComments(path, outputPath);
+                    getLog().info("Fixing formatting in Liquibase file: " + path);
+                    fixedFiles.incrementAndGet();
+                }
+                else
+                {
+                    getLog().info("File already in Liquibase format, ignoring: " + path);
+                    sqlFileStates.put(strRelativePath, strState);
+                    ignoredFiles.incrementAndGet();
+                }
+            } catch (Exception e)
+            {
+                getLog().error("Error processing file: " + path.getFileName(), e);
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Returns the path of a SQL file relative to the root of the tree
+         * @param path the SQL file
+         * @return the relative path, with '/' separators
+         */
+        private String getRelativePath(Path path)
+        {
+            return sqlRoot.relativize(path).toString().replace(File.separatorChar, '/');
+        }
+
+        /**
+         * Returns the changeset and preconditions tags of a changeset of this tree
+         * @param strId the changeset id
+         * @return the tags
+         */
+        private String getChangeSetHeader(String strId)
+        {
+            StringBuilder header = new StringBuilder();
+            header.append("-- changeset ").append(pluginName).append(":").append(strId).append(EOL);
+            header.append("-- preconditions onFail:MARK_RAN onError:WARN").append(EOL);
+            return header.toString();
+        }
+
+        /**
+         * Writes the SQL file as several changesets, split at statement boundaries.
+         * The output may be the SQL file itself.
+         * @param splitter the splitter
+         * @param path the SQL file
+         * @param outputPath the output file
+         * @return the number of changesets
+         * @throws IOException if an I/O error occurs
+         */
+        private int splitChangeSets(SqlChangeSetSplitter splitter, Path path, Path outputPath) throws IOException
+        {
+            Path tempFile = FileUtils.createReplacementFile(path, outputPath);
+            try
+            {
+                int nChangeSets;
+                try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+                        Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8))
+                {
+                    writer.write(LIQUIBASE_SQL_HEADER + EOL);
+                    nChangeSets = splitter.split(reader, writer, path.getFileName().toString(), this::getChangeSetHeader);
+                }
+                Files.move(tempFile, outputPath, StandardCopyOption.REPLACE_EXISTING);
+                return nChangeSets;
+            } finally
+            {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        private Path generateOutputPath(String strRelativePath) throws IOException
+        {
+            Path outputPath = (dryRun ? targetRoot : sqlRoot).resolve(strRelativePath);
+            Files.createDirectories(outputPath.getParent());
+            return outputPath;
+        }
+    }
+
 }
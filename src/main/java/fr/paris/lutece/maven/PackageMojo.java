@@ -34,9 +34,31 @@
 package fr.paris.lutece.maven;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.inject.Inject;
 
 import org.apache.maven.archiver.MavenArchiveConfiguration;
 import org.apache.maven.archiver.MavenArchiver;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -46,6 +68,11 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.archiver.jar.JarArchiver;
 import org.codehaus.plexus.archiver.zip.ZipArchiver;
+import org.jboss.jandex.Index;
+
+import fr.paris.lutece.maven.utils.sql.SqlBuildState;
+import fr.paris.lutece.maven.utils.sql.SqlTranslationManifest;
+import fr.paris.lutece.utils.sql.SqlRegexpHelper;
 
 /**
  * Packages Lutece core or plugin projects.<br/> This mojo produces two
@@ -71,6 +98,18 @@ public class PackageMojo
     //The path to the classes directory
     private static final String WEB_INF_CLASSES_PATH = "WEB-INF/classes/";
 
+    //The directory of the translated SQL files, in the build directory
+    private static final String SQL_TRANSLATED_DIRECTORY = "sql-translated";
+
+    //The Jandex index of the classes, in the build directory
+    private static final String JANDEX_INDEX_FILE = "jandex.idx";
+
+    //The build.properties file of lutece-core, in the build directory
+    private static final String CORE_BUILD_PROPERTIES_FILE = "lutece-core-build.properties";
+
+    //The build.properties file, in the SQL directory
+    private static final String BUILD_PROPERTIES_FILE = "build.properties";
+
     /**
      * The name of the generated artifact.
      *
@@ -123,6 +162,48 @@ public class PackageMojo
     @Parameter
     private MavenArchiveConfiguration archiveCfg = new MavenArchiveConfiguration(  );
 
+    /**
+     * The database vendors for which the Liquibase SQL files are translated and
+     * added to the webapp ZIP, in WEB-INF/sql-translated/&lt;vendor&gt;. The
+     * webapps using this artifact copy them instead of translating them again,
+     * as long as they use the same build.properties.
+     */
+    @Parameter( property = "packageSqlVendors" )
+    private List<String> packageSqlVendors;
+
+    /**
+     * The build.properties file used to translate the SQL files. By default,
+     * the one of lutece-core : WEB-INF/sql/build.properties of the webapp ZIP
+     * of the lutece-core dependency, or src/sql/build.properties when packaging
+     * lutece-core itself.
+     */
+    @Parameter( property = "packageSqlBuildProperties" )
+    private File packageSqlBuildProperties;
+
+    /**
+     * The local repository.
+     */
+    @Parameter( property = "localRepository" )
+    private ArtifactRepository localRepository;
+
+    /**
+     * The remote repositories.
+     */
+    @Parameter( property = "project.remoteArtifactRepositories" )
+    private List<ArtifactRepository> remoteRepositories;
+
+    /**
+     * The artifact factory.
+     */
+    @Inject
+    private ArtifactFactory artifactFactory;
+
+    /**
+     * The artifact resolver.
+     */
+    @Inject
+    private ArtifactResolver resolver;
+
     /**
      * Project-helper instance, used to make addition of resources simpler.
      *
@@ -145,7 +226,80 @@ public class PackageMojo
         // The two archives to be produced
         File classesJar = getArchiveFile( outputDirectory, artifactName, null, "jar" );
         File webappZip = getArchiveFile( outputDirectory, artifactName, WEBAPP_CLASSIFIER, "zip" );
+        List<File> listArchives = Arrays.asList( classesJar, webappZip );
+        File fingerprintFile = new File( outputDirectory, classesJar.getName(  ) + FINGERPRINT_EXTENSION );
+
+        try
+        {
+            ArchiveFingerprint fingerprint = getFingerprint(  );
+
+            if ( ( fingerprint != null ) && fingerprint.isUpToDate( fingerprintFile, listArchives ) )
+            {
+                getLog(  ).info( "Archives " + classesJar.getName(  ) + " and " + webappZip.getName(  ) +
+                                 " are up to date, their inputs did not change" );
+            }
+            else
+            {
+                buildArchives( classesJar, webappZip );
+
+                if ( fingerprint != null )
+                {
+                    fingerprint.store( fingerprintFile, listArchives );
+                }
+            }
+        } catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error computing the fingerprint of the archives", e );
+        }
+
+        // Set the classes JAR as the main artifact
+        project.getArtifact(  ).setFile( classesJar );
+
+        // Set the webapp ZIP as an attachement
+        projectHelper.attachArtifact( project, "zip", WEBAPP_CLASSIFIER, webappZip );
+    }
+
+    /**
+     * Returns the fingerprint of the inputs of the archives
+     *
+     * @return the fingerprint, or null if the archives have to be built anyway
+     * @throws IOException if an input could not be read
+     * @throws MojoExecutionException if the build.properties of lutece-core could not be resolved
+     */
+    private ArchiveFingerprint getFingerprint(  ) throws IOException, MojoExecutionException
+    {
+        if ( !skipUnchangedArchives || forceCreation )
+        {
+            return null;
+        }
+
+        ArchiveFingerprint fingerprint = new ArchiveFingerprint(  ).addValue( "project", project.getId(  ) )
+                                                                 .addValue( "packageSqlVendors", packageSqlVendors )
+                                                                 .addValue( "recompressAddedZips", recompressAddedZips )
+                                                                 .addValue( "outputTimestamp", outputTimestamp )
+                                                                 .addValue( "jandex", jandex )
+                                                                 .addArchive( archiveCfg )
+                                                                 .addArtifacts( project.getArtifacts(  ) );
+
+        for ( File input : new File[] { project.getFile(  ), classesDirectory, webappSourceDirectory, sqlDirectory, siteDirectory,
+                                        defaultConfDirectory, getSqlBuildProperties(  ) } )
+        {
+            fingerprint.addFile( input );
+        }
+
+        return fingerprint;
+    }
 
+    /**
+     * Builds the classes JAR and the webapp ZIP
+     *
+     * @param classesJar the classes JAR
+     * @param webappZip the webapp ZIP
+     * @throws MojoExecutionException if an error occured while building the archives
+     */
+    private void buildArchives( File classesJar, File webappZip )
+                        throws MojoExecutionException
+    {
         // Create a maven archiver to build these JARs
         MavenArchiver archiver = new MavenArchiver(  );
 
@@ -153,6 +307,7 @@ public class PackageMojo
         {
             // Package the classes JAR
             archiver.setArchiver( jarArchiver );
+            configureArchiver( archiver );
             archiver.setOutputFile( classesJar );
             archiveCfg.setForced( forceCreation );
 
@@ -163,12 +318,22 @@ public class PackageMojo
             {
                 archiver.getArchiver(  )
                         .addDirectory( classesDirectory, PACKAGE_CLASSES_INCLUDES, PACKAGE_CLASSES_EXCLUDES );
+
+                if ( jandex )
+                {
+                    File indexFile = new File( outputDirectory, JANDEX_INDEX_FILE );
+                    Index index = JandexIndexes.indexDirectory( classesDirectory );
+                    JandexIndexes.write( index, indexFile );
+                    archiver.getArchiver(  ).addFile( indexFile, JandexIndexes.JAR_INDEX_PATH );
+                    getLog(  ).info( "Indexed the annotations of " + index.getKnownClasses(  ).size(  ) + " classes" );
+                }
             }
 
-            archiver.createArchive( null, project, archiveCfg );
+            archiver.createArchive( null, project, configureArchive( archiveCfg ) );
 
             // Package the webapp ZIP
             zipArchiver.setCompress( true );
+            configureArchiver( zipArchiver );
             zipArchiver.setForced( forceCreation );
             zipArchiver.setDestFile( webappZip );
 
@@ -186,6 +351,14 @@ public class PackageMojo
                                               PACKAGE_WEBAPP_EXCLUDES );
                 }
 
+                File sqlTranslatedDirectory = translateSqlFiles(  );
+
+                if ( sqlTranslatedDirectory != null )
+                {
+                    zipArchiver.addDirectory( sqlTranslatedDirectory, WEB_INF_SQL_TRANSLATED_PATH, PACKAGE_WEBAPP_INCLUDES,
+                                              PACKAGE_WEBAPP_EXCLUDES );
+                }
+
                 if ( siteDirectory.exists(  ) )
                 {
                     zipArchiver.addDirectory( siteDirectory, WEB_INF_DOC_XML_PATH, PACKAGE_WEBAPP_SITE_INCLUDES,
@@ -209,12 +382,158 @@ public class PackageMojo
         {
             throw new MojoExecutionException( "Error assembling JAR", e );
         }
+    }
 
-        // Set the classes JAR as the main artifact
-        project.getArtifact(  ).setFile( classesJar );
+    /**
+     * Returns the build.properties file used to translate the SQL files, extracting
+     * the one of the lutece-core dependency unless packageSqlBuildProperties is set
+     *
+     * @return the build.properties file, which may not exist
+     * @throws IOException if the file could not be extracted
+     * @throws MojoExecutionException if the webapp ZIP of lutece-core could not be resolved
+     */
+    private File getSqlBuildProperties(  ) throws IOException, MojoExecutionException
+    {
+        if ( packageSqlBuildProperties != null )
+        {
+            return packageSqlBuildProperties;
+        }
 
-        // Set the webapp ZIP as an attachement
-        projectHelper.attachArtifact( project, "zip", WEBAPP_CLASSIFIER, webappZip );
+        packageSqlBuildProperties = new File( sqlDirectory, BUILD_PROPERTIES_FILE );
+
+        if ( ( packageSqlVendors == null ) || packageSqlVendors.isEmpty(  ) || LUTECE_CORE_TYPE.equals( project.getArtifactId(  ) ) )
+        {
+            return packageSqlBuildProperties;
+        }
+
+        Artifact coreArtifact = null;
+
+        for ( Artifact artifact : project.getArtifacts(  ) )
+        {
+            if ( LUTECE_CORE_TYPE.equals( artifact.getType(  ) ) )
+            {
+                coreArtifact = artifact;
+            }
+        }
+
+        if ( coreArtifact == null )
+        {
+            return packageSqlBuildProperties;
+        }
+
+        // Every Lutece artifact has an attached webapp artifact
+        Artifact webappArtifact = artifactFactory.createArtifactWithClassifier( coreArtifact.getGroupId(  ),
+                coreArtifact.getArtifactId(  ), coreArtifact.getVersion(  ), "zip", WEBAPP_CLASSIFIER );
+
+        try
+        {
+            resolver.resolve( webappArtifact, remoteRepositories, localRepository );
+        } catch ( Exception e )
+        {
+            throw new MojoExecutionException( "Error while resolving artifact " + webappArtifact, e );
+        }
+
+        try ( ZipFile zip = new ZipFile( webappArtifact.getFile(  ) ) )
+        {
+            ZipEntry entry = zip.getEntry( WEB_INF_BUILD_PROPERTIES_PATH );
+
+            if ( entry != null )
+            {
+                packageSqlBuildProperties = new File( outputDirectory, CORE_BUILD_PROPERTIES_FILE );
+                outputDirectory.mkdirs(  );
+
+                try ( InputStream in = zip.getInputStream( entry ) )
+                {
+                    Files.copy( in, packageSqlBuildProperties.toPath(  ), StandardCopyOption.REPLACE_EXISTING );
+                }
+            }
+        }
+
+        return packageSqlBuildProperties;
+    }
+
+    /**
+     * Translates the Liquibase SQL files for the packageSqlVendors, reading each source once.
+     *
+     * @return the directory of the translated files, or null if there are none
+     * @throws IOException if an I/O error occurs
+     * @throws MojoExecutionException if the build.properties of lutece-core could not be resolved
+     */
+    private File translateSqlFiles(  ) throws IOException, MojoExecutionException
+    {
+        if ( ( packageSqlVendors == null ) || packageSqlVendors.isEmpty(  ) || !sqlDirectory.exists(  ) )
+        {
+            return null;
+        }
+
+        File buildProperties = getSqlBuildProperties(  );
+
+        if ( !buildProperties.exists(  ) )
+        {
+            getLog(  ).warn( "Could not find " + buildProperties.getAbsolutePath(  ) + ", SQL files are not translated" );
+
+            return null;
+        }
+
+        Map<String, Function<String, String>> mapFilters = new LinkedHashMap<>(  );
+
+        for ( String strVendor : packageSqlVendors )
+        {
+            if ( !DATABASE_VENDORS.contains( strVendor ) )
+            {
+                throw new IllegalArgumentException( "Unknown database vendor in packageSqlVendors : '" + strVendor + "'" );
+            }
+
+            mapFilters.put( strVendor, new SqlRegexpHelper( buildProperties, strVendor )::filter );
+        }
+
+        File translatedDirectory = new File( outputDirectory, SQL_TRANSLATED_DIRECTORY );
+        org.codehaus.plexus.util.FileUtils.deleteDirectory( translatedDirectory );
+
+        SqlTranslationManifest manifest = new SqlTranslationManifest( SqlBuildState.hash( buildProperties.toPath(  ) ),
+                packageSqlVendors );
+        List<String> listFileErrors = new ArrayList<>(  );
+        Path source = sqlDirectory.toPath(  );
+        String strBasePath = sqlDirectory.getAbsolutePath(  );
+
+        Files.walkFileTree( source, new SimpleFileVisitor<Path>(  )
+            {
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) throws IOException
+                {
+                    File sqlFile = file.toFile(  ).getAbsoluteFile(  );
+
+                    if ( sqlFile.getName(  ).toLowerCase(  ).endsWith( LiquiBaseSqlMojo.SQL_EXT ) && ( sqlFile.length(  ) > 0 ) &&
+                            LiquiBaseSqlMojo.isFileManagedByLiquibase( sqlFile, strBasePath ) &&
+                            LiquiBaseSqlMojo.isTaggedWithLiquibase( sqlFile, listFileErrors, strBasePath ) )
+                    {
+                        String strRelativePath = source.relativize( file ).toString(  ).replace( File.separatorChar, '/' );
+                        Map<Path, Function<String, String>> destinations = new LinkedHashMap<>(  );
+
+                        for ( Map.Entry<String, Function<String, String>> filter : mapFilters.entrySet(  ) )
+                        {
+                            Path destination = translatedDirectory.toPath(  ).resolve( filter.getKey(  ) ).resolve( strRelativePath );
+                            Files.createDirectories( destination.getParent(  ) );
+                            destinations.put( destination, filter.getValue(  ) );
+                        }
+
+                        FileUtils.copyFileWithLineFilters( file, destinations );
+                        manifest.addFile( strRelativePath, SqlBuildState.hash( file ) );
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+
+        manifest.store( new File( translatedDirectory, project.getArtifactId(  ) + SqlTranslationManifest.EXTENSION ) );
+        getLog(  ).info( manifest.getFileCount(  ) + " SQL files translated for " + String.join( ", ", packageSqlVendors ) );
+
+        if ( !listFileErrors.isEmpty(  ) )
+        {
+            getLog(  ).warn( listFileErrors.size(  ) + " SQL files are not tagged for Liquibase and have not been translated" );
+        }
+
+        return translatedDirectory;
     }
 
     /**
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent tasks, such as the creation of several archives, on a
+ * bounded number of threads.
+ */
+public final class ParallelTasks
+{
+    /**
+     * A task which may fail
+     */
+    @FunctionalInterface
+    public interface Task
+    {
+        /**
+         * Runs the task
+         * @throws Exception if the task failed
+         */
+        void run(  ) throws Exception;
+    }
+
+    /**
+     * Private constructor
+     */
+    private ParallelTasks(  )
+    {
+    }
+
+    /**
+     * Runs tasks and waits for all of them. The tasks are run in the calling
+     * thread, in order, when there is a single thread or a single task.
+     *
+     * @param nThreads the maximum number of tasks running at the same time
+     * @param listTasks the tasks
+     * @throws Exception the failure of the first failed task, in the order of the list
+     */
+    public static void run( int nThreads, List<Task> listTasks ) throws Exception
+    {
+        if ( ( nThreads <= 1 ) || ( listTasks.size(  ) <= 1 ) )
+        {
+            for ( Task task : listTasks )
+            {
+                task.run(  );
+            }
+
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( nThreads, listTasks.size(  ) ) );
+
+        try
+        {
+            List<Future<Void>> listFutures = new ArrayList<>(  );
+
+            for ( Task task : listTasks )
+            {
+                listFutures.add( executor.submit( (  ) ->
+                        {
+                            task.run(  );
+
+                            return null;
+                        } ) );
+            }
+
+            for ( Future<Void> future : listFutures )
+            {
+                try
+                {
+                    future.get(  );
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( e.getCause(  ) instanceof Exception )
+                    {
+                        throw (Exception) e.getCause(  );
+                    }
+
+                    throw e;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow(  );
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import fr.paris.lutece.maven.utils.sql.PluginSqlScripts;
+import fr.paris.lutece.maven.utils.sql.SqlDependencyAnalyzer;
+
+/**
+ * Writes, for each database vendor, one init script holding the create and
+ * init scripts of an exploded webapp, translated for the vendor, so that a
+ * site database can be initialized in a single session.
+ * <br>
+ * The plugins are split into batches of plugins which do not depend on each
+ * other, from the tables their scripts create and use. The init scripts follow
+ * the order of the batches, and a plan listing the batches is written next to
+ * them, so that the scripts of a batch may run concurrently on separate
+ * connections.
+ * <br>
+ * The webapp must have been exploded before (<code>lutece:exploded</code>).
+ */
+@Mojo( name = "sql-bundle" )
+public class SqlBundleMojo
+    extends AbstractLuteceWebappMojo
+{
+    private static final String BUNDLE_PREFIX = "init_db_";
+    private static final String BUNDLE_EXTENSION = ".sql";
+    private static final String PLAN_FILE = "init_plan.properties";
+    private static final String PARTS_DIRECTORY = "parts";
+    private static final String EOL = "\n";
+
+    /**
+     * The exploded webapp holding the SQL scripts.
+     */
+    @Parameter( property = "sqlBundle.webappDirectory", defaultValue = "${project.build.directory}/lutece" )
+    private File bundleWebappDirectory;
+
+    /**
+     * The directory of the init scripts.
+     */
+    @Parameter( property = "sqlBundle.directory", defaultValue = "${project.build.directory}/lutece/WEB-INF/sql-bundle" )
+    private File bundleDirectory;
+
+    /**
+     * The database vendors to write an init script for (all of them by default).
+     */
+    @Parameter( property = "sqlBundle.vendors" )
+    private List<String> bundleVendors;
+
+    /**
+     * Executes the mojo on the current project.
+     *
+     * @throws MojoExecutionException
+     *             if an error occurred while writing the scripts.
+     */
+    @Override
+    public void execute(  )
+                 throws MojoExecutionException, MojoFailureException
+    {
+        File sqlDirectory = new File( bundleWebappDirectory, WEB_INF_SQL_PATH );
+
+        if ( !sqlDirectory.isDirectory(  ) )
+        {
+            throw new MojoExecutionException( "Could not find " + sqlDirectory.getAbsolutePath(  ) +
+                ", the webapp must be exploded first" );
+        }
+
+        List<String> listVendors = ( ( bundleVendors == null ) || bundleVendors.isEmpty(  ) ) ? new ArrayList<>( DATABASE_VENDORS ) : bundleVendors;
+
+        for ( String strVendor : listVendors )
+        {
+            if ( !DATABASE_VENDORS.contains( strVendor ) )
+            {
+                throw new MojoExecutionException( "Unknown database vendor in sqlBundle.vendors : '" + strVendor + "'" );
+            }
+        }
+
+        try
+        {
+            List<PluginSqlScripts> listPlugins = getSqlScriptsIndex( bundleWebappDirectory );
+            List<List<String>> listBatches = getBatches( sqlDirectory, listPlugins );
+            List<String> listScripts = getScripts( listPlugins, listBatches );
+
+            Map<File, Function<String, String>> mapBundles = new LinkedHashMap<>(  );
+            File buildProperties = new File( sqlDirectory, "build.properties" );
+
+            for ( String strVendor : listVendors )
+            {
+                mapBundles.put( new File( bundleDirectory, BUNDLE_PREFIX + strVendor + BUNDLE_EXTENSION ),
+                    getSqlHelper( buildProperties, strVendor )::filter );
+            }
+
+            writeBundles( sqlDirectory, listScripts, mapBundles );
+            writePlan( listPlugins, listBatches );
+            getLog(  ).info( "Init scripts for " + String.join( ", ", listVendors ) + " written in " + bundleDirectory + " from " +
+                listScripts.size(  ) + " scripts of " + listPlugins.size(  ) + " plugins" );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error writing the SQL init scripts", e );
+        }
+    }
+
+    /**
+     * Splits the plugins into batches, each plugin of a batch depending only on
+     * plugins of the previous batches
+     *
+     * @param sqlDirectory the WEB-INF/sql directory
+     * @param listPlugins the plugins, lutece-core first
+     * @return the names of the plugins of each batch, in execution order
+     * @throws IOException if an I/O error occurs
+     */
+    private List<List<String>> getBatches( File sqlDirectory, List<PluginSqlScripts> listPlugins )
+                    throws IOException
+    {
+        SqlDependencyAnalyzer analyzer = new SqlDependencyAnalyzer(  );
+
+        for ( PluginSqlScripts plugin : listPlugins )
+        {
+            for ( String strScript : plugin.getCreateScripts(  ) )
+            {
+                File script = new File( sqlDirectory, strScript.substring( SQL_PATH_PREFIX.length(  ) ) );
+
+                try ( Reader reader = Files.newBufferedReader( script.toPath(  ), StandardCharsets.UTF_8 ) )
+                {
+                    analyzer.analyze( plugin.getName(  ), reader );
+                }
+            }
+        }
+
+        return analyzer.getBatches(  );
+    }
+
+    /**
+     * Returns the create scripts of the plugins, in the order of the batches
+     *
+     * @param listPlugins the plugins, lutece-core first
+     * @param listBatches the names of the plugins of each batch
+     * @return the scripts, in execution order
+     */
+    private static List<String> getScripts( List<PluginSqlScripts> listPlugins, List<List<String>> listBatches )
+    {
+        Map<String, List<String>> mapScripts = new LinkedHashMap<>(  );
+
+        for ( PluginSqlScripts plugin : listPlugins )
+        {
+            mapScripts.computeIfAbsent( plugin.getName(  ), strName -> new ArrayList<>(  ) ).addAll( plugin.getCreateScripts(  ) );
+        }
+
+        List<String> listScripts = new ArrayList<>(  );
+
+        for ( List<String> listBatch : listBatches )
+        {
+            for ( String strPlugin : listBatch )
+            {
+                listScripts.addAll( mapScripts.get( strPlugin ) );
+            }
+        }
+
+        return listScripts;
+    }
+
+    /**
+     * Writes the init plan : the batches of plugins, each plugin of a batch
+     * depending only on plugins of the previous batches
+     *
+     * @param listPlugins the plugins, lutece-core first
+     * @param listBatches the names of the plugins of each batch
+     * @throws IOException if an I/O error occurs
+     */
+    private void writePlan( List<PluginSqlScripts> listPlugins, List<List<String>> listBatches )
+                    throws IOException
+    {
+        try ( BufferedWriter writer = Files.newBufferedWriter( new File( bundleDirectory, PLAN_FILE ).toPath(  ), StandardCharsets.UTF_8 ) )
+        {
+            writer.append( "# Generated file - do not edit" ).append( EOL );
+            writer.append( "# The plugins of a batch may be initialized concurrently, once the previous batches are done" ).append( EOL );
+            writer.append( "batch.count=" ).append( String.valueOf( listBatches.size(  ) ) ).append( EOL );
+
+            for ( int i = 0; i < listBatches.size(  ); i++ )
+            {
+                writer.append( "batch." ).append( String.valueOf( i + 1 ) ).append( '=' ).append( String.join( ",", listBatches.get( i ) ) )
+                      .append( EOL );
+            }
+
+            for ( PluginSqlScripts plugin : listPlugins )
+            {
+                writer.append( "plugin." ).append( plugin.getName(  ) ).append( '=' )
+                      .append( String.join( ",", plugin.getCreateScripts(  ) ) ).append( EOL );
+            }
+        }
+
+        getLog(  ).info( "Init plan of " + listPlugins.size(  ) + " plugins in " + listBatches.size(  ) + " batches written in " +
+            bundleDirectory );
+    }
+
+    /**
+     * Concatenates the scripts into the init scripts of all the vendors, reading each script once
+     * to translate it for all the vendors
+     *
+     * @param sqlDirectory the WEB-INF/sql directory
+     * @param listScripts the scripts, in execution order
+     * @param mapBundles the init scripts, with the translation of their vendor
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeBundles( File sqlDirectory, List<String> listScripts, Map<File, Function<String, String>> mapBundles )
+                       throws IOException
+    {
+        bundleDirectory.mkdirs(  );
+
+        // the translations of each script, by init script
+        File partsDirectory = new File( bundleDirectory, PARTS_DIRECTORY );
+
+        try
+        {
+            for ( String strScript : listScripts )
+            {
+                String strRelativePath = strScript.substring( SQL_PATH_PREFIX.length(  ) );
+                Map<Path, Function<String, String>> mapDestinations = new LinkedHashMap<>(  );
+
+                for ( Map.Entry<File, Function<String, String>> bundle : mapBundles.entrySet(  ) )
+                {
+                    Path part = getPart( partsDirectory, bundle.getKey(  ), strRelativePath );
+                    Files.createDirectories( part.getParent(  ) );
+                    mapDestinations.put( part, bundle.getValue(  ) );
+                }
+
+                FileUtils.copyFileWithLineFilters( new File( sqlDirectory, strRelativePath ).toPath(  ), mapDestinations );
+            }
+
+            for ( File bundle : mapBundles.keySet(  ) )
+            {
+                try ( OutputStream out = new BufferedOutputStream( Files.newOutputStream( bundle.toPath(  ) ) ) )
+                {
+                    out.write( ( "-- Generated file - do not edit" + EOL + "-- Create and init scripts of " + project.getArtifactId(  ) +
+                        ", in execution order" + EOL ).getBytes( StandardCharsets.UTF_8 ) );
+
+                    for ( String strScript : listScripts )
+                    {
+                        out.write( ( EOL + "-- " + strScript + EOL ).getBytes( StandardCharsets.UTF_8 ) );
+                        Files.copy( getPart( partsDirectory, bundle, strScript.substring( SQL_PATH_PREFIX.length(  ) ) ), out );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            org.codehaus.plexus.util.FileUtils.deleteDirectory( partsDirectory );
+        }
+    }
+
+    /**
+     * Returns the translation of a script for an init script
+     *
+     * @param partsDirectory the directory of the translations
+     * @param bundle the init script
+     * @param strRelativePath the path of the script, relative to WEB-INF/sql
+     * @return the translated script
+     */
+    private static Path getPart( File partsDirectory, File bundle, String strRelativePath )
+    {
+        return partsDirectory.toPath(  ).resolve( bundle.getName(  ) ).resolve( strRelativePath );
+    }
+}
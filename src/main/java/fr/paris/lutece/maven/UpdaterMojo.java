@@ -34,15 +34,20 @@
 package fr.paris.lutece.maven;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
-import javax.inject.Inject;
+import fr.paris.lutece.utils.sql.PluginVersion;
+import fr.paris.lutece.utils.sql.SqlPathInfo;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
 import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
 import org.apache.maven.artifact.resolver.ArtifactResolutionException;
 import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
@@ -54,7 +59,8 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.codehaus.plexus.archiver.Archiver;
-import org.codehaus.plexus.archiver.manager.ArchiverManager;
+import org.codehaus.plexus.archiver.util.DefaultArchivedFileSet;
+import org.codehaus.plexus.components.io.fileselectors.FileSelector;
 import org.codehaus.plexus.util.DirectoryScanner;
 
 /**
@@ -107,10 +113,16 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
         EXCLUDE_PATTERN_CLASSES, EXCLUDE_PATTERN_LIB, EXCLUDE_PATTERN_SVN, EXCLUDE_PATTERN_TARGET,
         EXCLUDE_PATTERN_SRC, EXCLUDE_PATTERN_SETTINGS, "*.*"
     };
-    private static final String[] RELEASE_INCLUDES =
+    private static final String[] SQL_INCLUDES =
     {
-        "**/create*.sql", "**/init*.sql"
+        "**/*.sql"
     };
+    private static final String PREFIX_CREATE = "create";
+    private static final String PREFIX_INIT = "init";
+    private static final String PREFIX_UPDATE = "update";
+    private static final String WEBAPP_PATH = "webapp/";
+    private static final String DELETED_FILES_PATH = "deleted-files.txt";
+    private static final String FULL_PACKAGE_EXTENSION = ".full";
 
     private static final String[] EXCLUDES =
     {
@@ -124,13 +136,17 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
     @Parameter(
     		property = "updOutputDirectory" )
     protected File updOutputDirectory;
+
     /**
-     * To look up Archiver/UnArchiver implementations
-     *
-     * @component
+     * Whether the upgrade packages only contain the files added or changed
+     * since the released webapp zip and jars of the version they upgrade from,
+     * with the list of the deleted files. The configuration and SQL files of
+     * the released webapp are never listed as deleted.
      */
-    @Inject
-    private ArchiverManager archiverManager;
+    @Parameter(
+    		property = "updater.delta",
+            defaultValue = "false" )
+    protected boolean deltaPackages;
 
     /**
      * Executes the mojo on the current project.
@@ -147,42 +163,90 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
         getLog().info( "Version FROM : " + strDefinedFromVersion );
 
         String strVersion = getVersion();
+        PluginVersion version = PluginVersion.of(strVersion);
 
-        // Build the release package
-        String[] releaseSqlFiles = getSqlFiles(RELEASE_INCLUDES, EXCLUDES);
-        getLog().info("Building RELEASE package ...");
-
-        assemblyBinaries(releaseSqlFiles, "release-" + strVersion);
+        // Scan the sql tree once and index the upgrade scripts by version
+        List<String> listReleaseSqlFiles = new ArrayList<>();
+        Map<String, List<String>> mapUpgradeSqlFiles = new TreeMap<>();
 
-        // Build upgrades packages corresponding to sql upgrades
-        String[] includes =
+        for (String strSqlFile : getSqlFiles(SQL_INCLUDES, EXCLUDES))
         {
-            "**/update*" + strVersion + ".sql"
-        };
-        String[] upgradeSqlFiles = getSqlFiles(includes, null);
+            String strFileName = new File(strSqlFile).getName();
 
-        if (upgradeSqlFiles.length > 0)
-        {
-            for (String upgradeSqlFile : upgradeSqlFiles) {
-                String strVersionFrom = getVersionFrom(upgradeSqlFile);
+            if (strFileName.startsWith(PREFIX_CREATE) || strFileName.startsWith(PREFIX_INIT))
+            {
+                listReleaseSqlFiles.add(strSqlFile);
+            }
+            else if (strFileName.startsWith(PREFIX_UPDATE))
+            {
+                String strVersionFrom = getVersionFrom(strSqlFile, version);
 
                 if (strVersionFrom != null)
                 {
-                    String[] files = new String[]
-                    {
-                        upgradeSqlFile
-                    };
-                    getLog().info("Building UPGRADE package from version " + strVersionFrom + " ...");
-                    assemblyBinaries(files, "upgrade-" + strVersionFrom + "-" + strVersion);
+                    mapUpgradeSqlFiles.computeIfAbsent(strVersionFrom, k -> new ArrayList<>()).add(strSqlFile);
                 }
             }
         }
-        else
+
+        // The plugin's jar and its dependencies are shared by every package
+        File jarFile = assemblyJar();
+        Collection<File> dependentJars = getDependentJars();
+        List<ParallelTasks.Task> listTasks = new ArrayList<>();
+
+        // Build the release package
+        listTasks.add(() ->
+        {
+            getLog().info("Building RELEASE package ...");
+            assemblyBinaries(jarFile, dependentJars, listReleaseSqlFiles, "release-" + strVersion, null);
+        });
+
+        // Build upgrades packages corresponding to sql upgrades
+        if (!mapUpgradeSqlFiles.isEmpty())
         {
+            for (Map.Entry<String, List<String>> entry : mapUpgradeSqlFiles.entrySet())
+            {
+                ArchiveDelta delta = deltaPackages ? getDelta(entry.getKey()) : null;
 
+                listTasks.add(() ->
+                {
+                    getLog().info("Building UPGRADE package from version " + entry.getKey() + " ...");
+                    assemblyBinaries(jarFile, dependentJars, entry.getValue(), "upgrade-" + entry.getKey() + "-" + strVersion,
+                            delta);
+                });
+            }
+        }
+        else
+        {
             // Build simple upgrade package with no sql upgrade
-            getLog().info("Building UPGRADE package from version " + strDefinedFromVersion + " (No SQL file found) ...");
-            assemblyBinaries(null,  "upgrade-" + strDefinedFromVersion + "-" + strVersion);
+            ArchiveDelta delta = deltaPackages ? getDelta(strDefinedFromVersion) : null;
+
+            listTasks.add(() ->
+            {
+                getLog().info("Building UPGRADE package from version " + strDefinedFromVersion + " (No SQL file found) ...");
+                assemblyBinaries(jarFile, dependentJars, null, "upgrade-" + strDefinedFromVersion + "-" + strVersion,
+                        delta);
+            });
+        }
+
+        try
+        {
+            ParallelTasks.run(getArchiveThreads(), listTasks);
+        }
+        catch (MojoExecutionException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new MojoExecutionException("Error assembling ZIP", e);
+        }
+        finally
+        {
+            // Delete temp files
+            if (jarFile.exists())
+            {
+                jarFile.delete();
+            }
         }
     }
 
@@ -221,6 +285,79 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
         return scanner.getIncludedFiles();
     }
 
+    /**
+     * Returns the delta with the files released in a version of the project :
+     * its webapp zip, without the configuration and SQL files which the
+     * package does not manage, and its jars.
+     *
+     * @param strVersionFrom the released version
+     * @return the delta, or null if the webapp zip could not be resolved
+     * @throws MojoExecutionException if the released files could not be read
+     */
+    private ArchiveDelta getDelta(String strVersionFrom) throws MojoExecutionException
+    {
+        Artifact previousArtifact = artifactFactory.createBuildArtifact(project.getGroupId(), project.getArtifactId(),
+                strVersionFrom, project.getPackaging());
+        File previousWebappZip;
+
+        try
+        {
+            previousWebappZip = resolveWebappArtifact(previousArtifact);
+        }
+        catch (MojoExecutionException e)
+        {
+            getLog().warn("Could not resolve the webapp of version " + strVersionFrom
+                    + ", the upgrade package will contain all the files : " + e.getMessage());
+
+            return null;
+        }
+
+        try
+        {
+            // the sql scripts of the webapp are replaced by the upgrade scripts, and
+            // its configuration files come from the default configuration of the plugin
+            ArchiveDelta delta = new ArchiveDelta(previousWebappZip, WEBAPP_PATH,
+                    WEB_INF_SQL_PATH, WEB_INF_SQL_TRANSLATED_PATH, WEB_INF_CONF_PATH);
+            delta.addPreviousFiles(AbstractLuteceMojo.WEB_INF_LIB_PATH, getPreviousJars(previousArtifact));
+
+            return delta;
+        }
+        catch (IOException e)
+        {
+            throw new MojoExecutionException("Error reading the files of version " + strVersionFrom, e);
+        }
+    }
+
+    /**
+     * Returns the jars released in a version of the project : the plugin's
+     * jar and its dependency libraries, resolved from the released POM.
+     *
+     * @param previousArtifact the released artifact
+     * @return the jars, empty if they could not be resolved
+     */
+    private Collection<File> getPreviousJars(Artifact previousArtifact)
+    {
+        Set<Artifact> dependencyArtifacts;
+
+        try
+        {
+            resolver.resolve(previousArtifact, remoteRepositories, localRepository);
+            dependencyArtifacts = metadataSource.retrieve(previousArtifact, localRepository, remoteRepositories).getArtifacts();
+        }
+        catch (ArtifactResolutionException | ArtifactNotFoundException | ArtifactMetadataRetrievalException e)
+        {
+            getLog().warn("Could not resolve the jars of version " + previousArtifact.getVersion()
+                    + ", the upgrade package will contain all the jars : " + e.getMessage());
+
+            return new HashSet<>();
+        }
+
+        Collection<File> result = getDependentJars(dependencyArtifacts, previousArtifact);
+        result.add(previousArtifact.getFile());
+
+        return result;
+    }
+
     private String getVersion()
     {
         String strVersion = project.getArtifact().getVersion();
@@ -236,9 +373,20 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
         return strVersion;
     }
 
-    private String getVersionFrom(String strFilename)
+    /**
+     * Returns the version an upgrade script upgrades from, read with
+     * SqlPathInfo as the upgrade index does.
+     *
+     * @param strFilename the path of the script, relative to the parent of the sql directory
+     * @param version the version of the package
+     * @return the version upgraded from, or null if the script does not upgrade to the version of the package
+     */
+    private String getVersionFrom(String strFilename, PluginVersion version)
     {
-        if ((strFilename.indexOf("-") == -1) || (strFilename.lastIndexOf("-") == -1))
+        // any update*<from>-<version>.sql script, not only the update_db_* ones
+        SqlPathInfo info = SqlPathInfo.parse(strFilename.replace(File.separatorChar, '/'));
+
+        if ((info == null) || info.isCreate() || (info.getSrcVersion() == null) || (info.getDstVersion() == null))
         {
             // there is an error in the file name
             getLog().warn("Error in fileName : " + strFilename);
@@ -246,33 +394,28 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
             return null;
         }
 
-        return strFilename.substring(strFilename.indexOf("-") + 1,
-                strFilename.lastIndexOf("-"));
+        return (info.getDstVersion().compareTo(version) == 0) ? info.getSrcVersion().toString() : null;
     }
 
     /**
-     * Create a zip with binaries files.
+     * Create the plugin's jar, shared by all the packages.
      *
+     * @return the jar file
      * @throws MojoExecutionException if an error occurred while building the
-     * artifact.
+     * jar.
      */
-    private synchronized void assemblyBinaries(String[] filenames, String strZipVersion)
+    private File assemblyJar()
             throws MojoExecutionException
     {
         try
         {
-            // Get the project type
-            String projectType = project.getArtifact().getType();
-
-            ////////////////////////////////////////////////////////////////////
-            // Build Plugin's jar
-
             getLog().info( "Build plugin's jar ...");
             Archiver archiverLibrary = archiverManager.getArchiver("jar");
 
             // Create the jar file, containing compiled classes
             File jarFile = getArchiveFile(null, false, "jar", project.getArtifact().getVersion());
             archiverLibrary.setDestFile(jarFile);
+            configureArchiver(archiverLibrary);
 
             if (!classesDirectory.exists())
             {
@@ -285,6 +428,35 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
 
             archiverLibrary.createArchive();
 
+            return jarFile;
+        }
+        catch (Exception e)
+        {
+            throw new MojoExecutionException("Error assembling JAR", e);
+        }
+    }
+
+    /**
+     * Create a zip with binaries files.
+     *
+     * @param jarFile the plugin's jar
+     * @param dependentJars the dependency libraries
+     * @param filenames the sql files of the package
+     * @param strZipVersion the version part of the package name
+     * @param delta the files of the version upgraded from, to only package
+     * the changed files, or null
+     * @throws MojoExecutionException if an error occurred while building the
+     * artifact.
+     */
+    private void assemblyBinaries(File jarFile, Collection<File> dependentJars, List<String> filenames, String strZipVersion,
+            ArchiveDelta delta)
+            throws MojoExecutionException
+    {
+        try
+        {
+            // Get the project type
+            String projectType = project.getArtifact().getType();
+
             ////////////////////////////////////////////////////////////////////
             // Build Plugin's package
 
@@ -295,8 +467,16 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
             // Create the final zip file
             File webappZip;
             webappZip = getArchiveFile( "upd", false, "zip", strZipVersion);
+            File packageZip = webappZip;
+
+            if (delta != null)
+            {
+                // the full package is only the source of the delta package
+                webappZip = new File(packageZip.getPath() + FULL_PACKAGE_EXTENSION);
+            }
 
             archiverPackage.setDestFile(webappZip);
+            configureArchiver(archiverPackage);
 
             getLog().debug("Package file : " + webappZip.getAbsolutePath() );
 
@@ -347,7 +527,7 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
                 archiverPackage.addFile(jarFile, WEB_INF_LIB_PATH + jarFile.getName());
 
                 // Add the dependency libraries
-                for (File f : getDependentJars())
+                for (File f : dependentJars)
                 {
                     if ((null != f) && f.exists())
                     {
@@ -359,10 +539,9 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
             // Finaly build the zip file.
             archiverPackage.createArchive();
 
-            // Delete temp files
-            if (jarFile.exists())
+            if (delta != null)
             {
-                jarFile.delete();
+                assemblyDelta(webappZip, delta, packageZip);
             }
         }
         catch (Exception e)
@@ -371,6 +550,50 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
         }
     }
 
+    /**
+     * Create an upgrade package with the files of a full package which are
+     * new or changed since the previous version, and the list of the deleted
+     * files.
+     *
+     * @param fullZip the full package, deleted afterwards
+     * @param delta the files of the version upgraded from
+     * @param packageZip the upgrade package
+     * @throws Exception if an error occurred while building the package.
+     */
+    private void assemblyDelta(File fullZip, ArchiveDelta delta, File packageZip)
+            throws Exception
+    {
+        delta.compare(fullZip);
+
+        File deletedFiles = new File(packageZip.getPath() + "-" + DELETED_FILES_PATH);
+        delta.storeDeletedEntries(deletedFiles);
+
+        try
+        {
+            Archiver archiverDelta = archiverManager.getArchiver("zip");
+            archiverDelta.setDestFile(packageZip);
+            configureArchiver(archiverDelta);
+
+            if (delta.getChangedCount() > 0)
+            {
+                DefaultArchivedFileSet fileSet = DefaultArchivedFileSet.archivedFileSet(fullZip);
+                fileSet.setFileSelectors(new FileSelector[] { delta });
+                archiverDelta.addArchivedFileSet(fileSet);
+            }
+
+            archiverDelta.addFile(deletedFiles, DELETED_FILES_PATH);
+            archiverDelta.createArchive();
+
+            getLog().info("Delta package " + packageZip.getName() + " : " + delta.getChangedCount() + " new or changed files, "
+                    + delta.getDeletedEntries().size() + " deleted files");
+        }
+        finally
+        {
+            deletedFiles.delete();
+            fullZip.delete();
+        }
+    }
+
     /**
      * Builds the name of the destination ZIP file with a timestamp if
      * necessary.
@@ -382,12 +605,9 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
      */
     private File getArchiveFile(String classifier, boolean timestamp, String extension, String strZipVersion)
     {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyMMdd-hhmm");
-        dateFormat.format(new Date()).toString();
-
         return new File(getOutputDirectory(),
                 project.getArtifactId() + ((null != classifier) ? ("-" + classifier) : "") + "-"
-                + strZipVersion + (timestamp ? ("-" + dateFormat.format(new Date()).toString()) : "") + "." + extension);
+                + strZipVersion + (timestamp ? ("-" + formatBuildDate("yyMMdd-HHmm")) : "") + "." + extension);
     }
 
     /**
@@ -395,15 +615,27 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
      *
      * @return Collection of jar
      */
-    @SuppressWarnings("unchecked")
     private Collection<File> getDependentJars()
+    {
+        return getDependentJars(project.getDependencyArtifacts(), project.getArtifact());
+    }
+
+    /**
+     * Get the collection of non lutece-core and non lutece-plugin jars of
+     * direct dependencies and of their transitive dependencies.
+     *
+     * @param dependencyArtifacts the direct dependencies
+     * @param originatingArtifact the artifact declaring the dependencies
+     * @return Collection of jar
+     */
+    private Collection<File> getDependentJars(Set<Artifact> dependencyArtifacts, Artifact originatingArtifact)
     {
         HashSet<File> result = new HashSet<>();
 
         // Direct dependency artifacts of project
         Set<Artifact> resultArtifact = new HashSet<>();
 
-        for (Object o : project.getDependencyArtifacts())
+        for (Object o : dependencyArtifacts)
         {
             Artifact a;
 
@@ -435,7 +667,7 @@ public class UpdaterMojo extends AbstractLuteceWebappMojo
         {
             artifactResolutionResult =
                     resolver.resolveTransitively(resultArtifact,
-                    project.getArtifact(),
+                    originatingArtifact,
                     remoteRepositories,
                     localRepository,
                     metadataSource);
@@ -131,29 +131,29 @@ public class WarMojo extends AbstractLuteceWebappMojo
                        throws MojoExecutionException
     {
         // Explode the webapp in the temporary directory
-        explodeWebapp( webappDirectory );
-        explodeConfigurationFiles( webappDirectory );
-        explodeSqlFiles(webappDirectory, targetDatabaseVendor);
+        // (or only stage its SQL and configuration files in direct mode)
+        File webappDir = prepareWebapp( webappDirectory );
+        explodeSqlFiles(webappDir, targetDatabaseVendor);
+        writeClasspathIndex( webappDir );
+        writeJandexIndexes( webappDir );
         
         // Make a war from the exploded directory
         File warFile = new File( outputDirectory, finalName + ".war" );
 
         MavenArchiver archiver = new MavenArchiver(  );
         archiver.setArchiver( jarArchiver );
+        configureArchiver( archiver );
         archiver.setOutputFile( warFile );
         archive.setForced( forceCreation );
 
-        try
-        {
-            if ( webappDirectory.exists(  ) )
+        // the vendor WARs are built at the same time
+        assemblyWars( webappDir, finalName, PACKAGE_WEBAPP_INCLUDES, new String[0], archive, (  ) ->
             {
-                archiver.getArchiver(  )
-                        .addDirectory( webappDirectory);
-            }
-            archiver.createArchive( session, project, archive );
-        } catch ( Exception e )
-        {
-            throw new MojoExecutionException( "Error assembling WAR", e );
-        }
+                if ( webappDir.exists(  ) )
+                {
+                    addWebappToArchive( archiver.getArchiver(  ), webappDir, PACKAGE_WEBAPP_INCLUDES, getWarExcludes( new String[0] ) );
+                }
+                archiver.createArchive( session, project, archive );
+            } );
     }
 }
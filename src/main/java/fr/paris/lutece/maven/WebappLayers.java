@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Splits a WAR into layers, from the most stable to the most specific, so
+ * that a container image can copy each layer separately and only rebuild the
+ * layers which changed :
+ * <ul>
+ * <li>dependencies : the third-party jars</li>
+ * <li>lutece-core : the lutece-core jar and the files of its webapp</li>
+ * <li>lutece-plugins : the plugin jars and the files of their webapps</li>
+ * <li>application : the other files, the resources and configuration of the
+ * project and the files it overrides</li>
+ * </ul>
+ * The layers are written in a directory each, with a layers.idx file listing
+ * the files of every layer in order.
+ */
+public class WebappLayers
+{
+    public static final String LAYER_DEPENDENCIES = "dependencies";
+    public static final String LAYER_CORE = "lutece-core";
+    public static final String LAYER_PLUGINS = "lutece-plugins";
+    public static final String LAYER_APPLICATION = "application";
+    public static final String LAYERS_INDEX_FILE = "layers.idx";
+
+    private static final String WEB_INF_LIB_PATH = "WEB-INF/lib/";
+
+    private final Set<String> _setDependencyJars = new HashSet<>(  );
+    private final Set<String> _setCoreJars = new HashSet<>(  );
+    private final Set<String> _setPluginJars = new HashSet<>(  );
+    private final Map<String, String> _mapCoreEntries = new HashMap<>(  );
+    private final Map<String, String> _mapPluginEntries = new HashMap<>(  );
+
+    /**
+     * Adds a third-party jar
+     * @param jar The jar
+     */
+    public void addDependencyJar( File jar )
+    {
+        _setDependencyJars.add( jar.getName(  ) );
+    }
+
+    /**
+     * Adds the lutece-core jar and webapp zip
+     * @param jar The jar
+     * @param webappZip The webapp zip
+     * @throws IOException if the webapp zip could not be read
+     */
+    public void addCore( File jar, File webappZip ) throws IOException
+    {
+        _setCoreJars.add( jar.getName(  ) );
+        readEntries( webappZip, _mapCoreEntries );
+    }
+
+    /**
+     * Adds a plugin jar and webapp zip
+     * @param jar The jar
+     * @param webappZip The webapp zip
+     * @throws IOException if the webapp zip could not be read
+     */
+    public void addPlugin( File jar, File webappZip ) throws IOException
+    {
+        _setPluginJars.add( jar.getName(  ) );
+        readEntries( webappZip, _mapPluginEntries );
+    }
+
+    /**
+     * Returns the layer of a WAR entry. A webapp file belongs to the layer of
+     * the artifact it comes from only if the WAR holds it unchanged.
+     * @param entry The entry
+     * @return The layer
+     */
+    public String getLayer( ZipEntry entry )
+    {
+        String strName = entry.getName(  );
+
+        if ( strName.startsWith( WEB_INF_LIB_PATH ) && ( strName.indexOf( '/', WEB_INF_LIB_PATH.length(  ) ) < 0 ) )
+        {
+            String strJar = strName.substring( WEB_INF_LIB_PATH.length(  ) );
+
+            if ( _setCoreJars.contains( strJar ) )
+            {
+                return LAYER_CORE;
+            }
+
+            if ( _setPluginJars.contains( strJar ) )
+            {
+                return LAYER_PLUGINS;
+            }
+
+            if ( _setDependencyJars.contains( strJar ) )
+            {
+                return LAYER_DEPENDENCIES;
+            }
+        }
+
+        String strState = getEntryState( entry );
+
+        if ( strState.equals( _mapCoreEntries.get( strName ) ) )
+        {
+            return LAYER_CORE;
+        }
+
+        if ( strState.equals( _mapPluginEntries.get( strName ) ) )
+        {
+            return LAYER_PLUGINS;
+        }
+
+        return LAYER_APPLICATION;
+    }
+
+    /**
+     * Writes the layers of a WAR
+     * @param war The WAR
+     * @param layersDirectory The directory of the layers, emptied first
+     * @return The number of files of each layer
+     * @throws IOException if the WAR could not be read or the layers written
+     */
+    public Map<String, Integer> write( File war, File layersDirectory ) throws IOException
+    {
+        FileUtils.deleteDirectory( layersDirectory );
+
+        Map<String, List<String>> mapLayers = new LinkedHashMap<>(  );
+
+        for ( String strLayer : new String[] { LAYER_DEPENDENCIES, LAYER_CORE, LAYER_PLUGINS, LAYER_APPLICATION } )
+        {
+            mapLayers.put( strLayer, new ArrayList<>(  ) );
+        }
+
+        try ( ZipFile zip = new ZipFile( war ) )
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(  ); entries.hasMoreElements(  ); )
+            {
+                ZipEntry entry = entries.nextElement(  );
+
+                if ( entry.isDirectory(  ) )
+                {
+                    continue;
+                }
+
+                String strLayer = getLayer( entry );
+                File file = new File( new File( layersDirectory, strLayer ), entry.getName(  ) );
+
+                if ( !file.toPath(  ).normalize(  ).startsWith( layersDirectory.toPath(  ).normalize(  ) ) )
+                {
+                    throw new IOException( "Invalid entry " + entry.getName(  ) + " in " + war );
+                }
+
+                file.getParentFile(  ).mkdirs(  );
+
+                try ( InputStream in = zip.getInputStream( entry ) )
+                {
+                    Files.copy( in, file.toPath(  ), StandardCopyOption.REPLACE_EXISTING );
+                }
+
+                file.setLastModified( entry.getTime(  ) );
+                mapLayers.get( strLayer ).add( entry.getName(  ) );
+            }
+        }
+
+        Map<String, Integer> mapCounts = new LinkedHashMap<>(  );
+
+        try ( Writer writer = Files.newBufferedWriter( new File( layersDirectory, LAYERS_INDEX_FILE ).toPath(  ),
+                    StandardCharsets.UTF_8 ) )
+        {
+            for ( Map.Entry<String, List<String>> layer : mapLayers.entrySet(  ) )
+            {
+                writer.write( "- \"" + layer.getKey(  ) + "\":\n" );
+
+                for ( String strName : layer.getValue(  ) )
+                {
+                    writer.write( "  - \"" + strName + "\"\n" );
+                }
+
+                mapCounts.put( layer.getKey(  ), layer.getValue(  ).size(  ) );
+            }
+        }
+
+        return mapCounts;
+    }
+
+    /**
+     * Reads the state of the entries of a webapp zip
+     * @param webappZip The webapp zip
+     * @param mapEntries The states by entry name
+     * @throws IOException if the webapp zip could not be read
+     */
+    private static void readEntries( File webappZip, Map<String, String> mapEntries ) throws IOException
+    {
+        if ( ( webappZip == null ) || !webappZip.exists(  ) )
+        {
+            return;
+        }
+
+        try ( ZipFile zip = new ZipFile( webappZip ) )
+        {
+            for ( Enumeration<? extends ZipEntry> entries = zip.entries(  ); entries.hasMoreElements(  ); )
+            {
+                ZipEntry entry = entries.nextElement(  );
+
+                if ( !entry.isDirectory(  ) )
+                {
+                    mapEntries.put( entry.getName(  ), getEntryState( entry ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the state of an entry
+     * @param entry The entry
+     * @return Its size and CRC
+     */
+    private static String getEntryState( ZipEntry entry )
+    {
+        return entry.getSize(  ) + ":" + entry.getCrc(  );
+    }
+}
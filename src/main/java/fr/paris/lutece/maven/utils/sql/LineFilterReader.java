@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Function;
+
+/**
+ * LineFilterReader : a reader applying a filter to each line of another
+ * reader, such as the SQL translation of a database vendor. Lines are
+ * returned with '\n' endings.
+ */
+public class LineFilterReader extends Reader
+{
+    private static final String EOL = "\n";
+
+    private final BufferedReader _reader;
+    private final Function<String, String> _filter;
+    private String _strLine = "";
+    private int _nPosition;
+
+    /**
+     * Constructor
+     * @param reader The reader
+     * @param filter The line filter, null to return the lines as is
+     */
+    public LineFilterReader( BufferedReader reader, Function<String, String> filter )
+    {
+        _reader = reader;
+        _filter = ( filter == null ) ? Function.identity(  ) : filter;
+    }
+
+    @Override
+    public int read( char[] cbuf, int nOffset, int nLength ) throws IOException
+    {
+        if ( nLength == 0 )
+        {
+            return 0;
+        }
+
+        while ( _nPosition >= _strLine.length(  ) )
+        {
+            String strLine = _reader.readLine(  );
+
+            if ( strLine == null )
+            {
+                return -1;
+            }
+
+            _strLine = _filter.apply( strLine ) + EOL;
+            _nPosition = 0;
+        }
+
+        int nRead = Math.min( nLength, _strLine.length(  ) - _nPosition );
+        _strLine.getChars( _nPosition, _nPosition + nRead, cbuf, nOffset );
+        _nPosition += nRead;
+
+        return nRead;
+    }
+
+    @Override
+    public void close(  ) throws IOException
+    {
+        _reader.close(  );
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PluginSqlScripts : the ordered SQL scripts of a plugin (or of the core)
+ */
+public class PluginSqlScripts
+{
+    // Variables declarations
+    private final String _strName;
+    private final List<String> _listCreateScripts = new ArrayList<>(  );
+    private final List<String> _listUpgradeScripts = new ArrayList<>(  );
+    private SqlUpgradeGraph _upgradeGraph;
+
+    /**
+     * Constructor
+     * @param strName The plugin name
+     */
+    public PluginSqlScripts( String strName )
+    {
+        _strName = strName;
+    }
+
+    /**
+     * Returns the Name
+     * @return The Name
+     */
+    public String getName(  )
+    {
+        return _strName;
+    }
+
+    /**
+     * Returns the creation scripts (create and init), in execution order
+     * @return The creation scripts
+     */
+    public List<String> getCreateScripts(  )
+    {
+        return _listCreateScripts;
+    }
+
+    /**
+     * Returns the upgrade scripts, in execution order
+     * @return The upgrade scripts
+     */
+    public List<String> getUpgradeScripts(  )
+    {
+        return _listUpgradeScripts;
+    }
+
+    /**
+     * Returns the graph of the upgrade scripts
+     * @return The upgrade graph, null if the index is not built yet
+     */
+    public SqlUpgradeGraph getUpgradeGraph(  )
+    {
+        return _upgradeGraph;
+    }
+
+    /**
+     * Sets the graph of the upgrade scripts
+     * @param upgradeGraph The upgrade graph
+     */
+    public void setUpgradeGraph( SqlUpgradeGraph upgradeGraph )
+    {
+        _upgradeGraph = upgradeGraph;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * SqlBuildState : keeps track of the SQL files generated in a previous build,
+ * so that unchanged outputs are not rewritten.
+ */
+public class SqlBuildState
+{
+    private static final String KEY_VENDOR = "vendor";
+    private static final String KEY_BUILD_PROPERTIES = "build.properties";
+    private static final String PREFIX_FILE = "file.";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File _file;
+    private final Properties _properties = new Properties(  );
+    private final Set<String> _setSeenPaths = new HashSet<>(  );
+    private int _nUpToDate;
+
+    private SqlBuildState( File file )
+    {
+        _file = file;
+    }
+
+    /**
+     * Loads the state stored in a given file
+     * @param file The state file (may not exist yet)
+     * @return The state
+     * @throws IOException if the file exists and could not be read
+     */
+    public static SqlBuildState load( File file ) throws IOException
+    {
+        SqlBuildState state = new SqlBuildState( file );
+
+        if ( file.exists(  ) )
+        {
+            try ( InputStream in = Files.newInputStream( file.toPath(  ) ) )
+            {
+                state._properties.load( in );
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     * Tells if the stored outputs were generated with the same settings
+     * @param strVendor The target database vendor
+     * @param strBuildPropertiesHash The hash of the build.properties file
+     * @return true if the stored outputs can be reused
+     */
+    public boolean isCompatible( String strVendor, String strBuildPropertiesHash )
+    {
+        return strVendor.equals( _properties.getProperty( KEY_VENDOR ) ) &&
+        strBuildPropertiesHash.equals( _properties.getProperty( KEY_BUILD_PROPERTIES ) );
+    }
+
+    /**
+     * Forgets all the stored outputs and records new settings
+     * @param strVendor The target database vendor
+     * @param strBuildPropertiesHash The hash of the build.properties file
+     */
+    public void reset( String strVendor, String strBuildPropertiesHash )
+    {
+        _properties.clear(  );
+        _properties.setProperty( KEY_VENDOR, strVendor );
+        _properties.setProperty( KEY_BUILD_PROPERTIES, strBuildPropertiesHash );
+    }
+
+    /**
+     * Tells if a source file has to be written again, and records its current hash
+     * @param strRelativePath The path of the source, relative to the source directory
+     * @param source The source file
+     * @param targets The output files, one per destination of the copy
+     * @return true if an output is missing or out of date
+     */
+    public boolean needsUpdate( String strRelativePath, File source, File... targets )
+    {
+        _setSeenPaths.add( strRelativePath );
+
+        String strHash;
+
+        try
+        {
+            strHash = hash( source.toPath(  ) );
+        }
+        catch ( IOException e )
+        {
+            // let the copy report the problem
+            _properties.remove( PREFIX_FILE + strRelativePath );
+
+            return true;
+        }
+
+        if ( allExist( targets ) && strHash.equals( _properties.getProperty( PREFIX_FILE + strRelativePath ) ) )
+        {
+            _nUpToDate++;
+
+            return false;
+        }
+
+        _properties.setProperty( PREFIX_FILE + strRelativePath, strHash );
+
+        return true;
+    }
+
+    /**
+     * Tells if all the outputs of a source exist
+     * @param targets The output files
+     * @return true if every output exists
+     */
+    private static boolean allExist( File... targets )
+    {
+        for ( File target : targets )
+        {
+            if ( !target.exists(  ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes from the state the sources that were not seen during this build
+     * @return The relative paths of the sources that disappeared
+     */
+    public List<String> removeStalePaths(  )
+    {
+        List<String> listStale = new ArrayList<>(  );
+
+        for ( String strKey : _properties.stringPropertyNames(  ) )
+        {
+            if ( strKey.startsWith( PREFIX_FILE ) )
+            {
+                String strPath = strKey.substring( PREFIX_FILE.length(  ) );
+
+                if ( !_setSeenPaths.contains( strPath ) )
+                {
+                    listStale.add( strPath );
+                    _properties.remove( strKey );
+                }
+            }
+        }
+
+        return listStale;
+    }
+
+    /**
+     * Returns the number of outputs found up to date during this build
+     * @return The number of outputs found up to date
+     */
+    public int getUpToDateCount(  )
+    {
+        return _nUpToDate;
+    }
+
+    /**
+     * Stores the state in its file
+     * @throws IOException if the file could not be written
+     */
+    public void store(  ) throws IOException
+    {
+        File parentDirectory = _file.getParentFile(  );
+
+        if ( parentDirectory != null )
+        {
+            parentDirectory.mkdirs(  );
+        }
+
+        try ( OutputStream out = Files.newOutputStream( _file.toPath(  ) ) )
+        {
+            _properties.store( out, "Generated file - do not edit" );
+        }
+    }
+
+    /**
+     * Computes the hash of a file content
+     * @param path The file
+     * @return The hexadecimal hash
+     * @throws IOException if the file could not be read
+     */
+    public static String hash( Path path ) throws IOException
+    {
+        MessageDigest digest = newDigest(  );
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try ( InputStream in = Files.newInputStream( path ) )
+        {
+            int nRead;
+
+            while ( ( nRead = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, nRead );
+            }
+        }
+
+        return HexFormat.of(  ).formatHex( digest.digest(  ) );
+    }
+
+    /**
+     * Creates a new message digest
+     * @return The message digest
+     */
+    private static MessageDigest newDigest(  )
+    {
+        try
+        {
+            return MessageDigest.getInstance( HASH_ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // SHA-256 is available in every JRE
+            throw new IllegalStateException( e );
+        }
+    }
+}
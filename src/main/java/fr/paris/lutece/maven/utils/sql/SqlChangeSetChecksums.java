@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SqlChangeSetChecksums : the index of the changesets of the SQL files of a
+ * webapp, with a checksum of their content, computed at build time to detect
+ * the changed changesets without re-reading the scripts.
+ * <br>
+ * The checksum is a MD5 of the changeset body, with lines trimmed and blank
+ * lines removed. It cannot be compared with the checksums stored by Liquibase
+ * in DATABASECHANGELOG, whose normalization depends on the Liquibase version.
+ */
+public class SqlChangeSetChecksums
+{
+    private static final Pattern PATTERN_CHANGESET = Pattern.compile( "^--\\s*changeset\\s+(\\S+)" );
+    private static final String HASH_ALGORITHM = "MD5";
+    private static final String SEPARATOR = "\t";
+    private static final String COMMENT = "#";
+    private static final String EOL = "\n";
+
+    // path -> lines "changeset<TAB>checksum", in file order
+    private final Map<String, List<String>> _mapEntries = new TreeMap<>(  );
+
+    /**
+     * Loads the checksums stored in a given file
+     * @param file The checksums file (may not exist)
+     * @return The checksums, empty if the file does not exist
+     * @throws IOException if the file exists and could not be read
+     */
+    public static SqlChangeSetChecksums load( File file ) throws IOException
+    {
+        SqlChangeSetChecksums checksums = new SqlChangeSetChecksums(  );
+
+        if ( file.exists(  ) )
+        {
+            for ( String strLine : Files.readAllLines( file.toPath(  ), StandardCharsets.UTF_8 ) )
+            {
+                if ( strLine.isEmpty(  ) || strLine.startsWith( COMMENT ) )
+                {
+                    continue;
+                }
+
+                int nSeparator = strLine.indexOf( SEPARATOR );
+
+                if ( nSeparator > 0 )
+                {
+                    checksums._mapEntries.computeIfAbsent( strLine.substring( 0, nSeparator ), k -> new ArrayList<>(  ) )
+                                         .add( strLine.substring( nSeparator + 1 ) );
+                }
+            }
+        }
+
+        return checksums;
+    }
+
+    /**
+     * Computes the checksums of the changesets of a SQL file
+     * @param strPath The path of the script (sql/...)
+     * @param file The SQL file, as it will be run
+     * @throws IOException if the file could not be read
+     */
+    public void compute( String strPath, Path file ) throws IOException
+    {
+        List<String> listEntries = new ArrayList<>(  );
+        MessageDigest digest = null;
+        String strChangeSet = null;
+
+        try ( BufferedReader reader = Files.newBufferedReader( file, StandardCharsets.UTF_8 ) )
+        {
+            String strLine;
+
+            while ( ( strLine = reader.readLine(  ) ) != null )
+            {
+                Matcher matcher = PATTERN_CHANGESET.matcher( strLine );
+
+                if ( matcher.find(  ) )
+                {
+                    addEntry( listEntries, strChangeSet, digest );
+                    strChangeSet = matcher.group( 1 );
+                    digest = newDigest(  );
+                }
+                else if ( digest != null )
+                {
+                    String strTrimmed = strLine.trim(  );
+
+                    if ( !strTrimmed.isEmpty(  ) )
+                    {
+                        digest.update( strTrimmed.getBytes( StandardCharsets.UTF_8 ) );
+                        digest.update( (byte) '\n' );
+                    }
+                }
+            }
+        }
+
+        addEntry( listEntries, strChangeSet, digest );
+        _mapEntries.put( strPath, listEntries );
+    }
+
+    /**
+     * Copies the checksums of a SQL file from previously computed checksums
+     * @param previous The previous checksums
+     * @param strPath The path of the script (sql/...)
+     * @return true if the previous checksums held the file, false otherwise
+     */
+    public boolean reuse( SqlChangeSetChecksums previous, String strPath )
+    {
+        List<String> listEntries = previous._mapEntries.get( strPath );
+
+        if ( listEntries == null )
+        {
+            return false;
+        }
+
+        _mapEntries.put( strPath, listEntries );
+
+        return true;
+    }
+
+    /**
+     * Returns the content of the checksums file
+     * @param strVendor The database vendor the scripts were translated for
+     * @return The content, one changeset per line : path, changeset and checksum separated by tabs
+     */
+    public String toIndex( String strVendor )
+    {
+        StringBuilder sb = new StringBuilder(  );
+        sb.append( COMMENT ).append( " Generated file - do not edit" ).append( EOL );
+        sb.append( COMMENT ).append( " vendor=" ).append( strVendor ).append( EOL );
+
+        for ( Map.Entry<String, List<String>> entry : _mapEntries.entrySet(  ) )
+        {
+            for ( String strEntry : entry.getValue(  ) )
+            {
+                sb.append( entry.getKey(  ) ).append( SEPARATOR ).append( strEntry ).append( EOL );
+            }
+        }
+
+        return sb.toString(  );
+    }
+
+    /**
+     * Adds the checksum of the current changeset, if any
+     * @param listEntries The entries of the file
+     * @param strChangeSet The changeset (author:id)
+     * @param digest The digest of the changeset body
+     */
+    private static void addEntry( List<String> listEntries, String strChangeSet, MessageDigest digest )
+    {
+        if ( strChangeSet != null )
+        {
+            listEntries.add( strChangeSet + SEPARATOR + HexFormat.of(  ).formatHex( digest.digest(  ) ) );
+        }
+    }
+
+    /**
+     * Creates a new digest
+     * @return The digest
+     */
+    private static MessageDigest newDigest(  )
+    {
+        try
+        {
+            return MessageDigest.getInstance( HASH_ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * SqlChangeSetSplitter : writes a SQL script as several Liquibase changesets,
+ * split at statement boundaries.
+ * <br>
+ * The first changeset has the given id, the following ones the id suffixed
+ * with -2, -3... so that the ids stay the same as long as the beginning of
+ * the script does not change.
+ * <br>
+ * The statement boundaries are only trusted when the script has none of the
+ * constructs the scanner does not know : a script with backslashes in its
+ * statements (MySQL escapes), a BEGIN ... END block, a DELIMITER line or a
+ * dollar-quoted body is written as one changeset.
+ */
+public class SqlChangeSetSplitter
+{
+    private static final String EOL = "\n";
+    private static final Pattern PATTERN_BLOCK = Pattern.compile( "\\bBEGIN\\b|\\$\\$", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_DELIMITER = Pattern.compile( "(?im)^\\s*DELIMITER\\s" );
+
+    private final int _nMaxStatements;
+    private final long _lMaxBytes;
+
+    /**
+     * Constructor
+     * @param nMaxStatements The maximum number of statements of a changeset, 0 for no limit
+     * @param lMaxBytes The maximum size of the statements of a changeset, 0 for no limit
+     */
+    public SqlChangeSetSplitter( int nMaxStatements, long lMaxBytes )
+    {
+        _nMaxStatements = nMaxStatements;
+        _lMaxBytes = lMaxBytes;
+    }
+
+    /**
+     * Tells if the splitter has a limit
+     * @return true if scripts may be split
+     */
+    public boolean isEnabled(  )
+    {
+        return ( _nMaxStatements > 0 ) || ( _lMaxBytes > 0 );
+    }
+
+    /**
+     * Writes a script as changesets
+     * @param reader The script
+     * @param writer The output
+     * @param strId The id of the first changeset
+     * @param changeSetHeader Returns the header of a changeset (ending with a line terminator) for its id
+     * @return The number of changesets written
+     * @throws IOException if an I/O error occurs
+     */
+    public int split( Reader reader, Writer writer, String strId, Function<String, String> changeSetHeader )
+        throws IOException
+    {
+        StringBuilder sbScript = new StringBuilder(  );
+        char[] buffer = new char[8192];
+        int nRead;
+
+        while ( ( nRead = reader.read( buffer ) ) > 0 )
+        {
+            sbScript.append( buffer, 0, nRead );
+        }
+
+        String strScript = sbScript.toString(  );
+        writer.write( changeSetHeader.apply( strId ) );
+
+        if ( !isSplittable( strScript ) )
+        {
+            writer.write( strScript );
+
+            return 1;
+        }
+
+        Splitter splitter = new Splitter( writer, strId, changeSetHeader );
+        SqlStatementScanner.scan( new StringReader( strScript ), splitter );
+
+        return splitter._nChangeSets;
+    }
+
+    /**
+     * Tells if the statement boundaries found by the scanner can be trusted
+     * @param strScript The script
+     * @return false if the script has backslashes in its statements, a block or a DELIMITER line
+     * @throws IOException if an I/O error occurs
+     */
+    static boolean isSplittable( String strScript ) throws IOException
+    {
+        if ( PATTERN_DELIMITER.matcher( strScript ).find(  ) )
+        {
+            return false;
+        }
+
+        boolean[] splittable = { true };
+        SqlStatementScanner.scan( new StringReader( strScript ),
+            new SqlStatementScanner.Handler(  )
+            {
+                @Override
+                public void statement( String strStatement )
+                {
+                    splittable[0] = splittable[0] && ( strStatement.indexOf( '\\' ) == -1 ) &&
+                        !PATTERN_BLOCK.matcher( strStatement ).find(  );
+                }
+
+                @Override
+                public void text( String strText )
+                {
+                    // comments, and an unterminated last statement which is never split
+                }
+            } );
+
+        return splittable[0];
+    }
+
+    /**
+     * Handler writing the script and starting a new changeset when a limit is reached
+     */
+    private class Splitter implements SqlStatementScanner.Handler
+    {
+        private final Writer _writer;
+        private final String _strId;
+        private final Function<String, String> _changeSetHeader;
+        private int _nChangeSets = 1;
+        private int _nStatements;
+        private long _lBytes;
+        private boolean _bFull;
+        private boolean _bLineStart;
+
+        Splitter( Writer writer, String strId, Function<String, String> changeSetHeader )
+        {
+            _writer = writer;
+            _strId = strId;
+            _changeSetHeader = changeSetHeader;
+        }
+
+        @Override
+        public void statement( String strStatement ) throws IOException
+        {
+            if ( _bFull )
+            {
+                if ( !_bLineStart )
+                {
+                    // the statement follows the previous one on the same line
+                    _writer.write( EOL );
+                }
+
+                startChangeSet(  );
+            }
+
+            _writer.write( strStatement );
+            _bLineStart = false;
+            _nStatements++;
+            _lBytes += strStatement.getBytes( StandardCharsets.UTF_8 ).length;
+            _bFull = ( ( _nMaxStatements > 0 ) && ( _nStatements >= _nMaxStatements ) ) ||
+                ( ( _lMaxBytes > 0 ) && ( _lBytes >= _lMaxBytes ) );
+        }
+
+        @Override
+        public void text( String strText ) throws IOException
+        {
+            int nEndOfLine = strText.indexOf( '\n' );
+
+            if ( !_bFull || ( nEndOfLine == -1 ) )
+            {
+                _writer.write( strText );
+                _bLineStart = strText.endsWith( EOL );
+
+                return;
+            }
+
+            // the new changeset starts on the line following the last statement
+            _writer.write( strText, 0, nEndOfLine + 1 );
+
+            if ( !strText.substring( nEndOfLine + 1 ).trim(  ).isEmpty(  ) )
+            {
+                startChangeSet(  );
+            }
+
+            _writer.write( strText.substring( nEndOfLine + 1 ) );
+            _bLineStart = strText.endsWith( EOL );
+        }
+
+        /**
+         * Writes the header of the next changeset
+         * @throws IOException if an I/O error occurs
+         */
+        private void startChangeSet(  ) throws IOException
+        {
+            _nChangeSets++;
+            _writer.write( _changeSetHeader.apply( _strId + "-" + _nChangeSets ) );
+            _nStatements = 0;
+            _lBytes = 0;
+            _bFull = false;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SqlDependencyAnalyzer : finds the tables created, altered, written and
+ * referenced by units of SQL scripts (the scripts of a plugin for instance),
+ * and splits the units into batches : the units of a batch do not depend on
+ * each other and may run concurrently, after the units of the previous batches.
+ * <br>
+ * A unit depends on the units creating the tables it alters, writes or
+ * references. Units altering, updating or deleting from the same table also
+ * keep their order. Concurrent INSERTs into a shared table are allowed.
+ */
+public class SqlDependencyAnalyzer
+{
+    private static final String NAME = "([\\w.`\"\\[\\]]+)";
+    private static final Pattern PATTERN_CREATE_TABLE = Pattern.compile( "^CREATE\\s+(?:\\w+\\s+)?TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?" + NAME,
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_ALTER_TABLE = Pattern.compile( "^(?:ALTER\\s+TABLE|DROP\\s+TABLE(?:\\s+IF\\s+EXISTS)?|TRUNCATE(?:\\s+TABLE)?)\\s+" + NAME,
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_CREATE_INDEX = Pattern.compile( "^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+\\S+\\s+ON\\s+" + NAME,
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_INSERT = Pattern.compile( "^(?:INSERT|REPLACE)\\s+(?:IGNORE\\s+)?INTO\\s+" + NAME,
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_UPDATE = Pattern.compile( "^(?:UPDATE\\s+|DELETE\\s+FROM\\s+)" + NAME,
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_REFERENCES = Pattern.compile( "\\bREFERENCES\\s+" + NAME, Pattern.CASE_INSENSITIVE );
+
+    private final Map<String, Unit> _mapUnits = new LinkedHashMap<>(  );
+
+    /**
+     * Analyzes a script of a unit. The scripts of a unit are analyzed in their execution order.
+     * @param strUnit The unit name
+     * @param reader The script
+     * @throws IOException if an I/O error occurs
+     */
+    public void analyze( String strUnit, Reader reader ) throws IOException
+    {
+        Unit unit = _mapUnits.computeIfAbsent( strUnit, Unit::new );
+
+        SqlStatementScanner.scan( reader, new SqlStatementScanner.Handler(  )
+            {
+                @Override
+                public void statement( String strStatement )
+                {
+                    unit.analyze( strStatement );
+                }
+
+                @Override
+                public void text( String strText )
+                {
+                    // blanks and comments
+                }
+            } );
+    }
+
+    /**
+     * Splits the units into batches
+     * @return The batches, in execution order, each batch holding units in their analysis order
+     */
+    public List<List<String>> getBatches(  )
+    {
+        List<Unit> listUnits = new ArrayList<>( _mapUnits.values(  ) );
+        Map<String, Unit> mapCreators = new LinkedHashMap<>(  );
+
+        for ( Unit unit : listUnits )
+        {
+            for ( String strTable : unit._setCreated )
+            {
+                mapCreators.putIfAbsent( strTable, unit );
+            }
+        }
+
+        // the batch of a unit is the one following the last batch of the units it depends on
+        Map<Unit, Integer> mapBatches = new LinkedHashMap<>(  );
+        Set<Unit> setVisiting = new HashSet<>(  );
+        List<List<String>> listBatches = new ArrayList<>(  );
+
+        for ( Unit unit : listUnits )
+        {
+            int nBatch = getBatch( unit, listUnits, mapCreators, mapBatches, setVisiting );
+
+            while ( listBatches.size(  ) <= nBatch )
+            {
+                listBatches.add( new ArrayList<>(  ) );
+            }
+
+            listBatches.get( nBatch ).add( unit._strName );
+        }
+
+        return listBatches;
+    }
+
+    /**
+     * Returns the batch of a unit
+     * @param unit The unit
+     * @param listUnits The units, in their analysis order
+     * @param mapCreators The unit creating each table
+     * @param mapBatches The batches already computed
+     * @param setVisiting The units being computed, to break cycles
+     * @return The batch index
+     */
+    private static int getBatch( Unit unit, List<Unit> listUnits, Map<String, Unit> mapCreators, Map<Unit, Integer> mapBatches,
+        Set<Unit> setVisiting )
+    {
+        Integer nBatch = mapBatches.get( unit );
+
+        if ( nBatch != null )
+        {
+            return nBatch;
+        }
+
+        setVisiting.add( unit );
+
+        int nIndex = listUnits.indexOf( unit );
+        int nResult = 0;
+
+        for ( Unit other : listUnits )
+        {
+            boolean bDependency = ( other != unit ) && !setVisiting.contains( other ) &&
+                ( unit.dependsOn( other, mapCreators ) || ( ( listUnits.indexOf( other ) < nIndex ) && unit.conflictsWith( other ) ) );
+
+            if ( bDependency )
+            {
+                nResult = Math.max( nResult, getBatch( other, listUnits, mapCreators, mapBatches, setVisiting ) + 1 );
+            }
+        }
+
+        setVisiting.remove( unit );
+        mapBatches.put( unit, nResult );
+
+        return nResult;
+    }
+
+    /**
+     * Normalizes a table name
+     * @param strName The name, possibly quoted
+     * @return The lower case name, without quotes
+     */
+    private static String normalize( String strName )
+    {
+        return strName.replaceAll( "[`\"\\[\\]]", "" ).toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * The tables used by a unit
+     */
+    private static class Unit
+    {
+        private final String _strName;
+        private final Set<String> _setCreated = new HashSet<>(  );
+        private final Set<String> _setAltered = new HashSet<>(  );
+        private final Set<String> _setInserted = new HashSet<>(  );
+        private final Set<String> _setReferenced = new HashSet<>(  );
+
+        Unit( String strName )
+        {
+            _strName = strName;
+        }
+
+        /**
+         * Records the tables used by a statement
+         * @param strStatement The statement
+         */
+        void analyze( String strStatement )
+        {
+            Matcher matcher;
+
+            if ( ( matcher = PATTERN_CREATE_TABLE.matcher( strStatement ) ).find(  ) )
+            {
+                _setCreated.add( normalize( matcher.group( 1 ) ) );
+            }
+            else if ( ( matcher = PATTERN_ALTER_TABLE.matcher( strStatement ) ).find(  ) ||
+                    ( matcher = PATTERN_CREATE_INDEX.matcher( strStatement ) ).find(  ) ||
+                    ( matcher = PATTERN_UPDATE.matcher( strStatement ) ).find(  ) )
+            {
+                _setAltered.add( normalize( matcher.group( 1 ) ) );
+            }
+            else if ( ( matcher = PATTERN_INSERT.matcher( strStatement ) ).find(  ) )
+            {
+                _setInserted.add( normalize( matcher.group( 1 ) ) );
+            }
+
+            Matcher references = PATTERN_REFERENCES.matcher( strStatement );
+
+            while ( references.find(  ) )
+            {
+                _setReferenced.add( normalize( references.group( 1 ) ) );
+            }
+        }
+
+        /**
+         * Tells if this unit uses a table created by another unit
+         * @param other The other unit
+         * @param mapCreators The unit creating each table
+         * @return true if this unit depends on the other one
+         */
+        boolean dependsOn( Unit other, Map<String, Unit> mapCreators )
+        {
+            return usesTableOf( _setAltered, other, mapCreators ) || usesTableOf( _setInserted, other, mapCreators ) ||
+            usesTableOf( _setReferenced, other, mapCreators );
+        }
+
+        /**
+         * Tells if this unit alters, updates or deletes from a table another unit writes
+         * @param other The other unit
+         * @return true if the units have to keep their order
+         */
+        boolean conflictsWith( Unit other )
+        {
+            for ( String strTable : _setAltered )
+            {
+                if ( other._setAltered.contains( strTable ) || other._setInserted.contains( strTable ) )
+                {
+                    return true;
+                }
+            }
+
+            for ( String strTable : other._setAltered )
+            {
+                if ( _setInserted.contains( strTable ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static boolean usesTableOf( Set<String> setTables, Unit other, Map<String, Unit> mapCreators )
+        {
+            for ( String strTable : setTables )
+            {
+                if ( mapCreators.get( strTable ) == other )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import fr.paris.lutece.utils.sql.PluginVersion;
+import fr.paris.lutece.utils.sql.SqlPathInfo;
+
+/**
+ * SqlIndexService : orders the SQL scripts of a webapp by plugin, so that the
+ * runtime does not have to discover them. The shortest upgrade path from each
+ * version of a plugin is included.
+ */
+public class SqlIndexService
+{
+    /** The name of the core in the index */
+    public static final String CORE = "core";
+    private static final String SQL_DIRECTORY = "sql";
+    private static final String PLUGINS_DIRECTORY = "sql/plugins/";
+    private static final String[] SCRIPT_DIRECTORIES = { "plugin", "upgrade", "core" };
+    private static final String PREFIX = "liquibase.index.";
+    private static final String EOL = "\n";
+
+    /**
+     * Private constructor
+     */
+    private SqlIndexService(  )
+    {
+    }
+
+    /**
+     * Builds the index of the given SQL scripts
+     * @param scripts The paths of the scripts, relative to the classpath root (ie sql/...), with '/' separators
+     * @return The scripts by plugin, the core first, then plugins by name
+     */
+    public static List<PluginSqlScripts> buildIndex( Collection<String> scripts )
+    {
+        Map<String, PluginSqlScripts> mapPlugins = new TreeMap<>( Comparator.comparing( ( String s ) -> !CORE.equals( s ) )
+                                                                             .thenComparing( Comparator.naturalOrder(  ) ) );
+        Map<String, PluginVersion> mapVersions = new TreeMap<>(  );
+
+        for ( String strScript : scripts )
+        {
+            SqlPathInfo info = SqlPathInfo.parse( strScript );
+
+            if ( info == null )
+            {
+                continue;
+            }
+
+            PluginSqlScripts plugin = mapPlugins.computeIfAbsent( getPluginName( strScript ), PluginSqlScripts::new );
+
+            if ( info.isCreate(  ) )
+            {
+                plugin.getCreateScripts(  ).add( strScript );
+            }
+            else
+            {
+                plugin.getUpgradeScripts(  ).add( strScript );
+                mapVersions.put( strScript, info.getDstVersion(  ) );
+            }
+        }
+
+        Comparator<String> byVersion = Comparator.comparing( mapVersions::get,
+                Comparator.nullsLast( Comparator.<PluginVersion>naturalOrder(  ) ) );
+
+        for ( PluginSqlScripts plugin : mapPlugins.values(  ) )
+        {
+            plugin.getCreateScripts(  ).sort( Comparator.comparing( SqlIndexService::getFileName ) );
+            plugin.getUpgradeScripts(  ).sort( byVersion.thenComparing( SqlIndexService::getFileName ) );
+            plugin.setUpgradeGraph( SqlUpgradeGraph.build( plugin.getUpgradeScripts(  ) ) );
+        }
+
+        return new ArrayList<>( mapPlugins.values(  ) );
+    }
+
+    /**
+     * Returns the name of the plugin owning a SQL script
+     * @param strScript The path of the script (sql/...)
+     * @return The plugin name, or {@link #CORE}
+     */
+    public static String getPluginName( String strScript )
+    {
+        int nLastSlash = strScript.lastIndexOf( '/' );
+        String strDirectory = ( nLastSlash == -1 ) ? "" : strScript.substring( 0, nLastSlash );
+
+        for ( String strScriptDirectory : SCRIPT_DIRECTORIES )
+        {
+            if ( strDirectory.endsWith( "/" + strScriptDirectory ) )
+            {
+                strDirectory = strDirectory.substring( 0, strDirectory.length(  ) - strScriptDirectory.length(  ) - 1 );
+
+                break;
+            }
+        }
+
+        if ( strDirectory.startsWith( PLUGINS_DIRECTORY ) )
+        {
+            return strDirectory.substring( PLUGINS_DIRECTORY.length(  ) );
+        }
+
+        return SQL_DIRECTORY.equals( strDirectory ) || strDirectory.isEmpty(  ) ? CORE : strDirectory;
+    }
+
+    /**
+     * Writes the index in the properties format
+     * @param listPlugins The scripts by plugin
+     * @return The content of the index file
+     */
+    public static String toProperties( List<PluginSqlScripts> listPlugins )
+    {
+        StringBuilder sb = new StringBuilder(  );
+        sb.append( "# Generated file - do not edit" ).append( EOL );
+        sb.append( "# Ordered SQL scripts of the webapp, by plugin" ).append( EOL );
+
+        List<String> listNames = new ArrayList<>(  );
+        listPlugins.forEach( p -> listNames.add( p.getName(  ) ) );
+        sb.append( PREFIX ).append( "plugins=" ).append( String.join( ",", listNames ) ).append( EOL );
+
+        for ( PluginSqlScripts plugin : listPlugins )
+        {
+            sb.append( PREFIX ).append( plugin.getName(  ) ).append( ".create=" )
+              .append( String.join( ",", plugin.getCreateScripts(  ) ) ).append( EOL );
+            sb.append( PREFIX ).append( plugin.getName(  ) ).append( ".upgrade=" )
+              .append( String.join( ",", plugin.getUpgradeScripts(  ) ) ).append( EOL );
+
+            SqlUpgradeGraph graph = plugin.getUpgradeGraph(  );
+
+            if ( ( graph != null ) && ( graph.getLatestVersion(  ) != null ) )
+            {
+                // the scripts to apply from each version are read directly, without sorting the scripts at run-time
+                String strUpgradePrefix = PREFIX + plugin.getName(  ) + ".upgrade.";
+                sb.append( strUpgradePrefix ).append( "latest=" ).append( graph.getLatestVersion(  ) ).append( EOL );
+
+                for ( Map.Entry<String, List<String>> path : graph.getPaths(  ).entrySet(  ) )
+                {
+                    sb.append( strUpgradePrefix ).append( "from." ).append( path.getKey(  ) ).append( '=' )
+                      .append( String.join( ",", path.getValue(  ) ) ).append( EOL );
+                }
+
+                if ( !graph.getGaps(  ).isEmpty(  ) )
+                {
+                    sb.append( strUpgradePrefix ).append( "gaps=" ).append( String.join( ",", graph.getGaps(  ) ) ).append( EOL );
+                }
+            }
+        }
+
+        return sb.toString(  );
+    }
+
+    /**
+     * Returns the file name of a script path
+     * @param strScript The script path
+     * @return The file name
+     */
+    private static String getFileName( String strScript )
+    {
+        return strScript.substring( strScript.lastIndexOf( '/' ) + 1 );
+    }
+}
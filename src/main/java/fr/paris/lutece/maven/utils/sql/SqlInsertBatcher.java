@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import fr.paris.lutece.maven.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SqlInsertBatcher : merges consecutive single-row INSERT statements on the
+ * same table and columns into multi-row INSERT statements.
+ * <br>
+ * Only statements separated by blanks are merged : a comment (a Liquibase
+ * changeset for instance) always ends a batch.
+ */
+public class SqlInsertBatcher
+{
+    private static final Pattern PATTERN_INSERT = Pattern.compile(
+            "^INSERT\\s+INTO\\s+([\\w.`\"]+)\\s*(\\([^()'\"]*\\))?\\s*VALUES\\s*(?=\\()", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_BLANKS = Pattern.compile( "\\s+" );
+    private static final String VENDOR_ORACLE = "oracle";
+    private static final String VENDOR_MYSQL = "mysql";
+    // stays below the 1MB max_allowed_packet of older MySQL servers
+    private static final int MYSQL_MAX_STATEMENT_BYTES = 1000000;
+    private static final String EOL = "\n";
+
+    private final int _nBatchSize;
+    private final int _nMaxStatementBytes;
+
+    /**
+     * Constructor
+     * @param nBatchSize The maximum number of rows of a merged statement
+     * @param nMaxStatementBytes The maximum size of a merged statement
+     */
+    public SqlInsertBatcher( int nBatchSize, int nMaxStatementBytes )
+    {
+        _nBatchSize = nBatchSize;
+        _nMaxStatementBytes = nMaxStatementBytes;
+    }
+
+    /**
+     * Returns a batcher suited to a database vendor
+     * @param strVendor The database vendor
+     * @param nBatchSize The maximum number of rows of a merged statement
+     * @return The batcher, or null if the vendor does not support multi-row inserts
+     */
+    public static SqlInsertBatcher forVendor( String strVendor, int nBatchSize )
+    {
+        if ( ( nBatchSize < 2 ) || ( strVendor == null ) || VENDOR_ORACLE.equals( strVendor ) )
+        {
+            return null;
+        }
+
+        return new SqlInsertBatcher( nBatchSize,
+            VENDOR_MYSQL.equals( strVendor ) ? MYSQL_MAX_STATEMENT_BYTES : Integer.MAX_VALUE );
+    }
+
+    /**
+     * Merges the INSERT statements of a SQL file, in place
+     * @param file The SQL file
+     * @return The number of statements removed by merging
+     * @throws IOException if an I/O error occurs
+     */
+    public int batchFile( Path file ) throws IOException
+    {
+        Path tempFile = FileUtils.createReplacementFile( file, file );
+
+        try
+        {
+            Batch batch;
+
+            try ( BufferedReader reader = new BufferedReader( new InputStreamReader( Files.newInputStream( file ),
+                            StandardCharsets.UTF_8 ) );
+                    Writer writer = Files.newBufferedWriter( tempFile, StandardCharsets.UTF_8 ) )
+            {
+                batch = new Batch( writer );
+                SqlStatementScanner.scan( reader, batch );
+                batch.flush(  );
+            }
+
+            if ( batch._nMerged > 0 )
+            {
+                Files.move( tempFile, file, StandardCopyOption.REPLACE_EXISTING );
+            }
+
+            return batch._nMerged;
+        }
+        finally
+        {
+            Files.deleteIfExists( tempFile );
+        }
+    }
+
+    /**
+     * Returns the row of a single-row INSERT statement
+     * @param strStatement The statement, ending with its semicolon
+     * @param nStart The start of the VALUES list
+     * @return The row (with its parenthesis), or null if the statement has not exactly one row
+     */
+    private static String getSingleRow( String strStatement, int nStart )
+    {
+        String strValues = strStatement.substring( nStart, strStatement.length(  ) - 1 ).trim(  );
+        int nDepth = 0;
+        int nQuote = -1;
+
+        for ( int i = 0; i < strValues.length(  ); i++ )
+        {
+            char c = strValues.charAt( i );
+
+            if ( nQuote != -1 )
+            {
+                nQuote = ( c == nQuote ) ? -1 : nQuote;
+            }
+            else if ( ( c == '\'' ) || ( c == '"' ) )
+            {
+                nQuote = c;
+            }
+            else if ( c == '(' )
+            {
+                nDepth++;
+            }
+            else if ( ( c == ')' ) && ( --nDepth == 0 ) )
+            {
+                // the first row must be the whole list
+                return ( i == ( strValues.length(  ) - 1 ) ) ? strValues : null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Handler merging the statements while the script is scanned
+     */
+    private class Batch implements SqlStatementScanner.Handler
+    {
+        private final Writer _writer;
+        private final List<String> _listRows = new ArrayList<>(  );
+        private final StringBuilder _sbBlanks = new StringBuilder(  );
+        private String _strPrefix;
+        private String _strKey;
+        private String _strFirstStatement;
+        private int _nBytes;
+        private int _nMerged;
+
+        Batch( Writer writer )
+        {
+            _writer = writer;
+        }
+
+        @Override
+        public void statement( String strStatement ) throws IOException
+        {
+            Matcher matcher = PATTERN_INSERT.matcher( strStatement );
+            // backslashes are escapes for MySQL only : such strings are left alone
+            String strRow = ( matcher.find(  ) && ( strStatement.indexOf( '\\' ) == -1 ) )
+                ? getSingleRow( strStatement, matcher.end(  ) ) : null;
+
+            if ( strRow == null )
+            {
+                flush(  );
+                _writer.write( strStatement );
+
+                return;
+            }
+
+            String strKey = PATTERN_BLANKS.matcher( matcher.group(  ).toUpperCase(  ) ).replaceAll( " " );
+            int nRowBytes = strRow.getBytes( StandardCharsets.UTF_8 ).length + 2;
+
+            if ( !strKey.equals( _strKey ) || ( _listRows.size(  ) >= _nBatchSize ) ||
+                    ( ( (long) _nBytes + nRowBytes ) > _nMaxStatementBytes ) )
+            {
+                flush(  );
+                _strKey = strKey;
+                _strPrefix = strStatement.substring( 0, matcher.end(  ) ).trim(  );
+                _strFirstStatement = strStatement;
+                _nBytes = _strPrefix.getBytes( StandardCharsets.UTF_8 ).length + 1;
+            }
+            else
+            {
+                // blanks between merged statements are dropped
+                _sbBlanks.setLength( 0 );
+            }
+
+            _listRows.add( strRow );
+            _nBytes += nRowBytes;
+        }
+
+        @Override
+        public void text( String strText ) throws IOException
+        {
+            if ( ( _strKey != null ) && strText.trim(  ).isEmpty(  ) )
+            {
+                _sbBlanks.append( strText );
+
+                return;
+            }
+
+            flush(  );
+            _writer.write( strText );
+        }
+
+        /**
+         * Writes the pending statement and blanks
+         * @throws IOException if an I/O error occurs
+         */
+        void flush(  ) throws IOException
+        {
+            if ( _listRows.size(  ) == 1 )
+            {
+                _writer.write( _strFirstStatement );
+            }
+            else if ( _listRows.size(  ) > 1 )
+            {
+                _writer.write( _strPrefix + EOL + String.join( "," + EOL, _listRows ) + ";" );
+                _nMerged += ( _listRows.size(  ) - 1 );
+            }
+
+            _listRows.clear(  );
+            _strKey = null;
+            _writer.write( _sbBlanks.toString(  ) );
+            _sbBlanks.setLength( 0 );
+        }
+    }
+}
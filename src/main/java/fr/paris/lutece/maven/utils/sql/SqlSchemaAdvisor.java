@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SqlSchemaAdvisor : static analysis of the tables created by SQL scripts,
+ * flagging the schema issues which usually slow down the pages of a site :
+ * <ul>
+ * <li>foreign keys without an index starting with their columns</li>
+ * <li><code>id_*</code> columns, used in joins, which do not start any index</li>
+ * <li>tables without a primary key</li>
+ * <li>MyISAM tables (no foreign keys nor transactions on MySQL)</li>
+ * </ul>
+ * The indexes may be created by any script analyzed, the upgrade scripts
+ * included.
+ */
+public class SqlSchemaAdvisor
+{
+    private static final String NAME = "([\\w.`\"\\[\\]]+)";
+    private static final Pattern PATTERN_COMMENTS = Pattern.compile( "--[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL );
+    private static final Pattern PATTERN_CREATE_TABLE = Pattern.compile( "^CREATE\\s+(?:\\w+\\s+)?TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?" + NAME +
+            "\\s*\\(", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_ALTER_TABLE = Pattern.compile( "^ALTER\\s+TABLE\\s+" + NAME + "\\s+", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_DROP_TABLE = Pattern.compile( "^DROP\\s+TABLE\\s+(?:IF\\s+EXISTS\\s+)?" + NAME, Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_CREATE_INDEX = Pattern.compile( "^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+\\S+\\s+ON\\s+" + NAME + "\\s*\\(",
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_PRIMARY_KEY = Pattern.compile( "^(?:CONSTRAINT\\s+\\S+\\s+)?PRIMARY\\s+KEY\\b[^(]*\\(",
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_INDEX = Pattern.compile( "^(?:CONSTRAINT\\s+\\S+\\s+)?(?:UNIQUE|(?:UNIQUE\\s+)?(?:KEY|INDEX))\\b[^(]*\\(",
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_FOREIGN_KEY = Pattern.compile( "^(?:CONSTRAINT\\s+\\S+\\s+)?FOREIGN\\s+KEY\\b[^(]*\\(",
+            Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_INLINE_PRIMARY_KEY = Pattern.compile( "\\bPRIMARY\\s+KEY\\b", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_INLINE_UNIQUE = Pattern.compile( "\\bUNIQUE\\b", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_INLINE_REFERENCES = Pattern.compile( "\\bREFERENCES\\b", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_ADD = Pattern.compile( "^ADD\\s+(?:COLUMN\\s+)?", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_MYISAM = Pattern.compile( "\\b(?:ENGINE|TYPE)\\s*=\\s*MyISAM\\b", Pattern.CASE_INSENSITIVE );
+    private static final Pattern PATTERN_COLUMN_NAME = Pattern.compile( "^" + NAME );
+    private static final String ID_COLUMN_PREFIX = "id_";
+
+    private final Map<String, Table> _mapTables = new LinkedHashMap<>(  );
+
+    /**
+     * Analyzes a script. The scripts are analyzed in their execution order.
+     * @param strScript The script path, for the report
+     * @param reader The script
+     * @throws IOException if an I/O error occurs
+     */
+    public void analyze( String strScript, Reader reader ) throws IOException
+    {
+        SqlStatementScanner.scan( reader, new SqlStatementScanner.Handler(  )
+            {
+                @Override
+                public void statement( String strStatement )
+                {
+                    analyzeStatement( strScript, PATTERN_COMMENTS.matcher( strStatement ).replaceAll( " " ).trim(  ) );
+                }
+
+                @Override
+                public void text( String strText )
+                {
+                    // blanks and comments
+                }
+            } );
+    }
+
+    /**
+     * Returns the findings on the tables analyzed, table by table
+     * @return The findings
+     */
+    public List<String> getFindings(  )
+    {
+        List<String> listFindings = new ArrayList<>(  );
+
+        for ( Table table : _mapTables.values(  ) )
+        {
+            table.addFindings( listFindings );
+        }
+
+        return listFindings;
+    }
+
+    /**
+     * Writes the findings into a report
+     * @param report The report file
+     * @param strTitle The title of the report
+     * @return The number of findings
+     * @throws IOException if an I/O error occurs
+     */
+    public int store( File report, String strTitle ) throws IOException
+    {
+        List<String> listFindings = getFindings(  );
+        report.getParentFile(  ).mkdirs(  );
+
+        try ( BufferedWriter writer = Files.newBufferedWriter( report.toPath(  ), StandardCharsets.UTF_8 ) )
+        {
+            writer.write( strTitle + " : " + _mapTables.size(  ) + " tables, " + listFindings.size(  ) + " findings" );
+            writer.newLine(  );
+
+            for ( String strFinding : listFindings )
+            {
+                writer.write( strFinding );
+                writer.newLine(  );
+            }
+        }
+
+        return listFindings.size(  );
+    }
+
+    /**
+     * Records the tables, indexes and keys defined by a statement
+     * @param strScript The script of the statement
+     * @param strStatement The statement, without comments
+     */
+    private void analyzeStatement( String strScript, String strStatement )
+    {
+        Matcher matcher;
+
+        if ( ( matcher = PATTERN_CREATE_TABLE.matcher( strStatement ) ).find(  ) )
+        {
+            Table table = new Table( normalize( matcher.group( 1 ) ), strScript );
+            _mapTables.put( table._strName, table );
+
+            int nEnd = findClosingParenthesis( strStatement, matcher.end(  ) );
+
+            for ( String strElement : splitTopLevel( strStatement.substring( matcher.end(  ), nEnd ) ) )
+            {
+                table.addElement( strElement, true );
+            }
+
+            table._bMyIsam = PATTERN_MYISAM.matcher( strStatement.substring( nEnd ) ).find(  );
+        }
+        else if ( ( matcher = PATTERN_CREATE_INDEX.matcher( strStatement ) ).find(  ) )
+        {
+            Table table = _mapTables.get( normalize( matcher.group( 1 ) ) );
+
+            if ( table != null )
+            {
+                table._listIndexes.add( parseColumns( strStatement, matcher.end(  ) ) );
+            }
+        }
+        else if ( ( matcher = PATTERN_ALTER_TABLE.matcher( strStatement ) ).find(  ) )
+        {
+            Table table = _mapTables.get( normalize( matcher.group( 1 ) ) );
+
+            if ( table != null )
+            {
+                String strClauses = strStatement.substring( matcher.end(  ) );
+
+                for ( String strClause : splitTopLevel( strClauses.endsWith( ";" ) ? strClauses.substring( 0, strClauses.length(  ) - 1 ) : strClauses ) )
+                {
+                    Matcher add = PATTERN_ADD.matcher( strClause );
+
+                    if ( add.find(  ) )
+                    {
+                        table.addElement( strClause.substring( add.end(  ) ), false );
+                    }
+                }
+
+                table._bMyIsam |= PATTERN_MYISAM.matcher( strClauses ).find(  );
+            }
+        }
+        else if ( ( matcher = PATTERN_DROP_TABLE.matcher( strStatement ) ).find(  ) )
+        {
+            _mapTables.remove( normalize( matcher.group( 1 ) ) );
+        }
+    }
+
+    /**
+     * Returns the position of the parenthesis closing an opened one
+     * @param strText The text
+     * @param nStart The position following the opening parenthesis
+     * @return The position of the closing parenthesis, or the length of the text
+     */
+    private static int findClosingParenthesis( String strText, int nStart )
+    {
+        int nDepth = 1;
+        char cQuote = 0;
+
+        for ( int i = nStart; i < strText.length(  ); i++ )
+        {
+            char c = strText.charAt( i );
+
+            if ( cQuote != 0 )
+            {
+                if ( c == cQuote )
+                {
+                    cQuote = 0;
+                }
+            }
+            else if ( ( c == '\'' ) || ( c == '"' ) || ( c == '`' ) )
+            {
+                cQuote = c;
+            }
+            else if ( c == '(' )
+            {
+                nDepth++;
+            }
+            else if ( ( c == ')' ) && ( --nDepth == 0 ) )
+            {
+                return i;
+            }
+        }
+
+        return strText.length(  );
+    }
+
+    /**
+     * Splits a text on its commas which are not in parentheses
+     * @param strText The text
+     * @return The trimmed parts
+     */
+    private static List<String> splitTopLevel( String strText )
+    {
+        List<String> listParts = new ArrayList<>(  );
+        int nDepth = 0;
+        int nStart = 0;
+
+        for ( int i = 0; i < strText.length(  ); i++ )
+        {
+            char c = strText.charAt( i );
+
+            if ( c == '(' )
+            {
+                nDepth++;
+            }
+            else if ( c == ')' )
+            {
+                nDepth--;
+            }
+            else if ( ( c == ',' ) && ( nDepth == 0 ) )
+            {
+                listParts.add( strText.substring( nStart, i ).trim(  ) );
+                nStart = i + 1;
+            }
+        }
+
+        listParts.add( strText.substring( nStart ).trim(  ) );
+
+        return listParts;
+    }
+
+    /**
+     * Parses a list of columns
+     * @param strText The text
+     * @param nStart The position following the opening parenthesis of the list
+     * @return The column names
+     */
+    private static List<String> parseColumns( String strText, int nStart )
+    {
+        List<String> listColumns = new ArrayList<>(  );
+
+        for ( String strColumn : splitTopLevel( strText.substring( nStart, findClosingParenthesis( strText, nStart ) ) ) )
+        {
+            Matcher matcher = PATTERN_COLUMN_NAME.matcher( strColumn );
+
+            if ( matcher.find(  ) )
+            {
+                listColumns.add( normalize( matcher.group( 1 ) ) );
+            }
+        }
+
+        return listColumns;
+    }
+
+    /**
+     * Normalizes a table or column name
+     * @param strName The name, possibly quoted
+     * @return The lower case name, without quotes
+     */
+    private static String normalize( String strName )
+    {
+        return strName.replaceAll( "[`\"\\[\\]]", "" ).toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * The keys and indexes of a table
+     */
+    private static class Table
+    {
+        private final String _strName;
+        private final String _strScript;
+        private final List<String> _listColumns = new ArrayList<>(  );
+        private final List<List<String>> _listIndexes = new ArrayList<>(  );
+        private final List<List<String>> _listForeignKeys = new ArrayList<>(  );
+        private boolean _bPrimaryKey;
+        private boolean _bMyIsam;
+
+        Table( String strName, String strScript )
+        {
+            _strName = strName;
+            _strScript = strScript;
+        }
+
+        /**
+         * Records a column or a constraint of the table
+         * @param strElement The column or constraint definition
+         * @param bCreate true for an element of the CREATE TABLE statement
+         */
+        void addElement( String strElement, boolean bCreate )
+        {
+            Matcher matcher;
+
+            if ( ( matcher = PATTERN_PRIMARY_KEY.matcher( strElement ) ).find(  ) )
+            {
+                _bPrimaryKey = true;
+                _listIndexes.add( parseColumns( strElement, matcher.end(  ) ) );
+            }
+            else if ( ( matcher = PATTERN_FOREIGN_KEY.matcher( strElement ) ).find(  ) )
+            {
+                _listForeignKeys.add( parseColumns( strElement, matcher.end(  ) ) );
+            }
+            else if ( ( matcher = PATTERN_INDEX.matcher( strElement ) ).find(  ) )
+            {
+                _listIndexes.add( parseColumns( strElement, matcher.end(  ) ) );
+            }
+            else if ( ( matcher = PATTERN_COLUMN_NAME.matcher( strElement ) ).find(  ) && ( bCreate || ( strElement.indexOf( ' ' ) > 0 ) ) )
+            {
+                String strColumn = normalize( matcher.group( 1 ) );
+                List<String> listColumn = List.of( strColumn );
+                _listColumns.add( strColumn );
+
+                if ( PATTERN_INLINE_PRIMARY_KEY.matcher( strElement ).find(  ) )
+                {
+                    _bPrimaryKey = true;
+                    _listIndexes.add( listColumn );
+                }
+                else if ( PATTERN_INLINE_UNIQUE.matcher( strElement ).find(  ) )
+                {
+                    _listIndexes.add( listColumn );
+                }
+
+                if ( PATTERN_INLINE_REFERENCES.matcher( strElement ).find(  ) )
+                {
+                    _listForeignKeys.add( listColumn );
+                }
+            }
+        }
+
+        /**
+         * Tells if an index starts with some columns
+         * @param listColumns The columns, in any order
+         * @return true if the columns are the leading columns of an index
+         */
+        boolean isIndexed( List<String> listColumns )
+        {
+            for ( List<String> listIndex : _listIndexes )
+            {
+                if ( ( listIndex.size(  ) >= listColumns.size(  ) ) &&
+                        listIndex.subList( 0, listColumns.size(  ) ).containsAll( listColumns ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Adds the findings on the table
+         * @param listFindings The findings
+         */
+        void addFindings( List<String> listFindings )
+        {
+            String strPrefix = _strScript + " : " + _strName + " : ";
+
+            if ( !_bPrimaryKey )
+            {
+                listFindings.add( strPrefix + "no primary key" );
+            }
+
+            if ( _bMyIsam )
+            {
+                listFindings.add( strPrefix + "MyISAM engine, use InnoDB" );
+            }
+
+            List<String> listReported = new ArrayList<>(  );
+
+            for ( List<String> listForeignKey : _listForeignKeys )
+            {
+                if ( !isIndexed( listForeignKey ) )
+                {
+                    listFindings.add( strPrefix + "foreign key (" + String.join( ", ", listForeignKey ) + ") without index" );
+                    listReported.addAll( listForeignKey );
+                }
+            }
+
+            for ( String strColumn : _listColumns )
+            {
+                if ( strColumn.startsWith( ID_COLUMN_PREFIX ) && !listReported.contains( strColumn ) && !isIndexed( List.of( strColumn ) ) )
+                {
+                    listFindings.add( strPrefix + "column " + strColumn + " without index" );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+/**
+ * SqlStatementScanner : splits a SQL script into statements and the text
+ * (blanks and comments) between them, reading it once.
+ * <br>
+ * Quoted strings, quoted identifiers and comments are taken into account to
+ * find the ending semicolon of the statements.
+ */
+public final class SqlStatementScanner
+{
+    private static final int NORMAL = 0;
+    private static final int LINE_COMMENT = 1;
+    private static final int BLOCK_COMMENT = 2;
+
+    /**
+     * Receives the parts of a script, in the order of the script
+     */
+    public interface Handler
+    {
+        /**
+         * Called for each statement, ending with its semicolon
+         * @param strStatement The statement
+         * @throws IOException if an I/O error occurs
+         */
+        void statement( String strStatement ) throws IOException;
+
+        /**
+         * Called for the text between statements, and for an unterminated last statement
+         * @param strText The text
+         * @throws IOException if an I/O error occurs
+         */
+        void text( String strText ) throws IOException;
+    }
+
+    /**
+     * Private constructor
+     */
+    private SqlStatementScanner(  )
+    {
+    }
+
+    /**
+     * Scans a script
+     * @param reader The script
+     * @param handler The handler receiving the statements and the text between them
+     * @throws IOException if an I/O error occurs
+     */
+    public static void scan( Reader reader, Handler handler ) throws IOException
+    {
+        PushbackReader in = new PushbackReader( reader, 1 );
+        StringBuilder sbText = new StringBuilder(  );
+        StringBuilder sbStatement = new StringBuilder(  );
+        int nState = NORMAL;
+        // the closing quote when in a quoted string or identifier, -1 otherwise
+        int nQuote = -1;
+        int c;
+
+        while ( ( c = in.read(  ) ) != -1 )
+        {
+            StringBuilder sb = ( sbStatement.length(  ) > 0 ) ? sbStatement : sbText;
+
+            if ( nQuote != -1 )
+            {
+                sb.append( (char) c );
+                nQuote = ( c == nQuote ) ? -1 : nQuote;
+            }
+            else if ( nState == LINE_COMMENT )
+            {
+                sb.append( (char) c );
+                nState = ( c == '\n' ) ? NORMAL : nState;
+            }
+            else if ( nState == BLOCK_COMMENT )
+            {
+                sb.append( (char) c );
+
+                if ( ( c == '*' ) && follows( in, '/' ) )
+                {
+                    sb.append( '/' );
+                    nState = NORMAL;
+                }
+            }
+            else if ( ( c == '-' ) && follows( in, '-' ) )
+            {
+                sb.append( "--" );
+                nState = LINE_COMMENT;
+            }
+            else if ( ( c == '/' ) && follows( in, '*' ) )
+            {
+                sb.append( "/*" );
+                nState = BLOCK_COMMENT;
+            }
+            else if ( ( sb == sbText ) && Character.isWhitespace( c ) )
+            {
+                sbText.append( (char) c );
+            }
+            else
+            {
+                if ( sb == sbText )
+                {
+                    // a statement starts
+                    flushText( sbText, handler );
+                }
+
+                sbStatement.append( (char) c );
+
+                if ( c == ';' )
+                {
+                    handler.statement( sbStatement.toString(  ) );
+                    sbStatement.setLength( 0 );
+                }
+                else if ( ( c == '\'' ) || ( c == '"' ) || ( c == '`' ) )
+                {
+                    nQuote = c;
+                }
+            }
+        }
+
+        flushText( sbText, handler );
+
+        if ( sbStatement.length(  ) > 0 )
+        {
+            handler.text( sbStatement.toString(  ) );
+        }
+    }
+
+    /**
+     * Tells if the next character is the expected one, consuming it only in this case
+     * @param in The reader
+     * @param expected The expected character
+     * @return true if the next character was the expected one
+     * @throws IOException if an I/O error occurs
+     */
+    private static boolean follows( PushbackReader in, char expected ) throws IOException
+    {
+        int c = in.read(  );
+
+        if ( c == expected )
+        {
+            return true;
+        }
+
+        if ( c != -1 )
+        {
+            in.unread( c );
+        }
+
+        return false;
+    }
+
+    /**
+     * Sends the pending text to the handler
+     * @param sbText The pending text
+     * @param handler The handler
+     * @throws IOException if an I/O error occurs
+     */
+    private static void flushText( StringBuilder sbText, Handler handler ) throws IOException
+    {
+        if ( sbText.length(  ) > 0 )
+        {
+            handler.text( sbText.toString(  ) );
+            sbText.setLength( 0 );
+        }
+    }
+}
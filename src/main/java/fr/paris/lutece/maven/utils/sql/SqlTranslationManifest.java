@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * SqlTranslationManifest : describes the SQL files translated for several
+ * database vendors when a plugin is packaged, so that the webapps using the
+ * plugin can copy them instead of translating them again.
+ * <br>
+ * The translated files of a vendor are stored in &lt;directory&gt;/&lt;vendor&gt;/,
+ * with the same relative path as their source in WEB-INF/sql.
+ */
+public class SqlTranslationManifest
+{
+    /** The extension of the manifest files */
+    public static final String EXTENSION = ".properties";
+    private static final String KEY_BUILD_PROPERTIES = "build.properties";
+    private static final String KEY_VENDORS = "vendors";
+    private static final String PREFIX_FILE = "file.";
+    private static final String SEPARATOR = ",";
+    private static final String EOL = "\n";
+
+    private final String _strBuildPropertiesHash;
+    private final List<String> _listVendors;
+    private final Map<String, String> _mapFileHashes = new TreeMap<>(  );
+
+    /**
+     * Constructor
+     * @param strBuildPropertiesHash The hash of the build.properties file used for the translation
+     * @param listVendors The vendors the files are translated for
+     */
+    public SqlTranslationManifest( String strBuildPropertiesHash, List<String> listVendors )
+    {
+        _strBuildPropertiesHash = strBuildPropertiesHash;
+        _listVendors = listVendors;
+    }
+
+    /**
+     * Records a translated file
+     * @param strPath The path of the file, relative to the SQL directory
+     * @param strSourceHash The hash of the source file
+     */
+    public void addFile( String strPath, String strSourceHash )
+    {
+        _mapFileHashes.put( strPath, strSourceHash );
+    }
+
+    /**
+     * Returns the number of translated files
+     * @return The number of translated files
+     */
+    public int getFileCount(  )
+    {
+        return _mapFileHashes.size(  );
+    }
+
+    /**
+     * Writes the manifest
+     * @param file The manifest file
+     * @throws IOException if the file could not be written
+     */
+    public void store( File file ) throws IOException
+    {
+        StringBuilder sb = new StringBuilder(  );
+        sb.append( "# Generated file - do not edit" ).append( EOL );
+        sb.append( KEY_BUILD_PROPERTIES ).append( '=' ).append( _strBuildPropertiesHash ).append( EOL );
+        sb.append( KEY_VENDORS ).append( '=' ).append( String.join( SEPARATOR, _listVendors ) ).append( EOL );
+
+        for ( Map.Entry<String, String> entry : _mapFileHashes.entrySet(  ) )
+        {
+            sb.append( PREFIX_FILE ).append( escape( entry.getKey(  ) ) ).append( '=' ).append( entry.getValue(  ) )
+              .append( EOL );
+        }
+
+        file.getParentFile(  ).mkdirs(  );
+        Files.write( file.toPath(  ), sb.toString(  ).getBytes( StandardCharsets.ISO_8859_1 ) );
+    }
+
+    /**
+     * Loads the manifests of a directory, keeping only the files translated with a given build.properties
+     * @param directory The directory holding the manifests and the translated files
+     * @param strBuildPropertiesHash The hash of the build.properties file of the webapp
+     * @return The hashes of the sources of the usable translated files, by path, with the vendors they are translated for
+     * @throws IOException if a manifest could not be read
+     */
+    public static Map<String, SqlTranslationManifest> loadAll( File directory, String strBuildPropertiesHash )
+        throws IOException
+    {
+        Map<String, SqlTranslationManifest> mapManifests = new HashMap<>(  );
+        File[] files = directory.listFiles( ( dir, name ) -> name.endsWith( EXTENSION ) );
+
+        if ( files == null )
+        {
+            return mapManifests;
+        }
+
+        for ( File file : files )
+        {
+            Properties properties = new Properties(  );
+
+            try ( InputStream in = Files.newInputStream( file.toPath(  ) ) )
+            {
+                properties.load( in );
+            }
+
+            if ( !strBuildPropertiesHash.equals( properties.getProperty( KEY_BUILD_PROPERTIES ) ) )
+            {
+                continue;
+            }
+
+            SqlTranslationManifest manifest = new SqlTranslationManifest( strBuildPropertiesHash,
+                    Arrays.asList( properties.getProperty( KEY_VENDORS, "" ).split( SEPARATOR ) ) );
+
+            for ( String strKey : properties.stringPropertyNames(  ) )
+            {
+                if ( strKey.startsWith( PREFIX_FILE ) )
+                {
+                    String strPath = strKey.substring( PREFIX_FILE.length(  ) );
+                    manifest.addFile( strPath, properties.getProperty( strKey ) );
+                    mapManifests.put( strPath, manifest );
+                }
+            }
+        }
+
+        return mapManifests;
+    }
+
+    /**
+     * Returns the translated file of a source, if it can be used
+     * @param directory The directory holding the manifests and the translated files
+     * @param strPath The path of the source, relative to the SQL directory
+     * @param strVendor The vendor
+     * @param strSourceHash The hash of the current source
+     * @return The translated file, or null if the source changed or was not translated for this vendor
+     */
+    public File getTranslatedFile( File directory, String strPath, String strVendor, String strSourceHash )
+    {
+        if ( !_listVendors.contains( strVendor ) || !strSourceHash.equals( _mapFileHashes.get( strPath ) ) )
+        {
+            return null;
+        }
+
+        File file = new File( new File( directory, strVendor ), strPath );
+
+        return file.isFile(  ) ? file : null;
+    }
+
+    /**
+     * Escapes a path to be used as a property key
+     * @param strPath The path
+     * @return The escaped path
+     */
+    private static String escape( String strPath )
+    {
+        StringBuilder sb = new StringBuilder(  );
+
+        for ( char c : strPath.toCharArray(  ) )
+        {
+            if ( ( c == '\\' ) || ( c == ':' ) || ( c == '=' ) || ( c == ' ' ) || ( c == '#' ) || ( c == '!' ) )
+            {
+                sb.append( '\\' ).append( c );
+            }
+            else if ( ( c < 0x20 ) || ( c > 0x7e ) )
+            {
+                sb.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                sb.append( c );
+            }
+        }
+
+        return sb.toString(  );
+    }
+}
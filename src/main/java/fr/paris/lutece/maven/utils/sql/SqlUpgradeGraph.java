@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import fr.paris.lutece.utils.sql.PluginVersion;
+import fr.paris.lutece.utils.sql.SqlPathInfo;
+
+/**
+ * SqlUpgradeGraph : the upgrade scripts of a plugin, as a graph of versions
+ * whose edges are the upgrade scripts. The versions of the scripts are read
+ * and ordered with {@link SqlPathInfo} and {@link PluginVersion}, as the
+ * upgrade scripts of the index.
+ * <br>
+ * The shortest upgrade path (the fewest scripts) from each version to the
+ * latest one is computed once, at build time, and the versions from which
+ * the latest one cannot be reached are reported as gaps.
+ */
+public class SqlUpgradeGraph
+{
+    private final Map<PluginVersion, List<Upgrade>> _mapUpgrades = new TreeMap<>(  );
+    private final Map<String, List<String>> _mapPaths = new LinkedHashMap<>(  );
+    private final List<String> _listGaps = new ArrayList<>(  );
+    private PluginVersion _latestVersion;
+
+    /**
+     * Private constructor, use {@link #build(List)}
+     */
+    private SqlUpgradeGraph(  )
+    {
+    }
+
+    /**
+     * Builds the graph of upgrade scripts
+     * @param listScripts The paths of the upgrade scripts of a plugin (sql/...), with '/' separators
+     * @return The graph
+     */
+    public static SqlUpgradeGraph build( List<String> listScripts )
+    {
+        SqlUpgradeGraph graph = new SqlUpgradeGraph(  );
+        TreeSet<PluginVersion> setVersions = new TreeSet<>(  );
+
+        for ( String strScript : listScripts )
+        {
+            SqlPathInfo info = SqlPathInfo.parse( strScript );
+
+            if ( ( info == null ) || info.isCreate(  ) || ( info.getSrcVersion(  ) == null ) || ( info.getDstVersion(  ) == null ) )
+            {
+                continue;
+            }
+
+            if ( info.getSrcVersion(  ).compareTo( info.getDstVersion(  ) ) < 0 )
+            {
+                graph._mapUpgrades.computeIfAbsent( info.getSrcVersion(  ), v -> new ArrayList<>(  ) )
+                                  .add( new Upgrade( info.getDstVersion(  ), strScript ) );
+                setVersions.add( info.getSrcVersion(  ) );
+                setVersions.add( info.getDstVersion(  ) );
+            }
+        }
+
+        if ( !setVersions.isEmpty(  ) )
+        {
+            graph._latestVersion = setVersions.last(  );
+            graph.computePaths( setVersions );
+        }
+
+        return graph;
+    }
+
+    /**
+     * Returns the latest version
+     * @return The latest version, null if there is no upgrade script
+     */
+    public String getLatestVersion(  )
+    {
+        return ( _latestVersion == null ) ? null : _latestVersion.toString(  );
+    }
+
+    /**
+     * Returns the shortest upgrade paths to the latest version
+     * @return The scripts to apply, in order, by source version, the versions in ascending order
+     */
+    public Map<String, List<String>> getPaths(  )
+    {
+        return _mapPaths;
+    }
+
+    /**
+     * Returns the versions from which there is no upgrade path to the latest version
+     * @return The versions, in ascending order
+     */
+    public List<String> getGaps(  )
+    {
+        return _listGaps;
+    }
+
+    /**
+     * Computes the shortest paths with a single breadth-first search from the latest version, on the reversed graph
+     * @param setVersions The versions, in ascending order
+     */
+    private void computePaths( TreeSet<PluginVersion> setVersions )
+    {
+        // the versions are only compared, they are not required to be equal when they have the same order
+        Map<PluginVersion, List<PluginVersion>> mapSources = new TreeMap<>(  );
+
+        for ( Map.Entry<PluginVersion, List<Upgrade>> entry : _mapUpgrades.entrySet(  ) )
+        {
+            for ( Upgrade upgrade : entry.getValue(  ) )
+            {
+                mapSources.computeIfAbsent( upgrade._dstVersion, v -> new ArrayList<>(  ) ).add( entry.getKey(  ) );
+            }
+        }
+
+        Map<PluginVersion, Integer> mapDistances = new TreeMap<>(  );
+        Deque<PluginVersion> queue = new ArrayDeque<>(  );
+        mapDistances.put( _latestVersion, 0 );
+        queue.add( _latestVersion );
+
+        while ( !queue.isEmpty(  ) )
+        {
+            PluginVersion version = queue.poll(  );
+
+            for ( PluginVersion source : mapSources.getOrDefault( version, List.of(  ) ) )
+            {
+                if ( mapDistances.putIfAbsent( source, mapDistances.get( version ) + 1 ) == null )
+                {
+                    queue.add( source );
+                }
+            }
+        }
+
+        for ( PluginVersion version : setVersions.headSet( _latestVersion ) )
+        {
+            Integer nDistance = mapDistances.get( version );
+
+            if ( nDistance == null )
+            {
+                _listGaps.add( version.toString(  ) );
+
+                continue;
+            }
+
+            // follow the scripts getting one step closer, the ones going the furthest first
+            List<String> listPath = new ArrayList<>(  );
+            PluginVersion current = version;
+
+            while ( current.compareTo( _latestVersion ) != 0 )
+            {
+                Upgrade next = null;
+
+                for ( Upgrade upgrade : _mapUpgrades.get( current ) )
+                {
+                    Integer nNext = mapDistances.get( upgrade._dstVersion );
+
+                    if ( ( nNext != null ) && ( nNext == ( mapDistances.get( current ) - 1 ) ) &&
+                            ( ( next == null ) || ( upgrade._dstVersion.compareTo( next._dstVersion ) > 0 ) ) )
+                    {
+                        next = upgrade;
+                    }
+                }
+
+                listPath.add( next._strScript );
+                current = next._dstVersion;
+            }
+
+            _mapPaths.put( version.toString(  ), listPath );
+        }
+    }
+
+    /**
+     * An upgrade script, from the version it is indexed by
+     */
+    private static class Upgrade
+    {
+        private final PluginVersion _dstVersion;
+        private final String _strScript;
+
+        Upgrade( PluginVersion dstVersion, String strScript )
+        {
+            _dstVersion = dstVersion;
+            _strScript = strScript;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ArchiveDelta tests
+ */
+public class ArchiveDeltaTest
+{
+    @TempDir
+    Path _tempDir;
+
+    /**
+     * Only the new or changed entries are selected, and only the entries the
+     * package manages are listed as deleted
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testCompare(  ) throws IOException
+    {
+        Map<String, String> mapPrevious = new LinkedHashMap<>(  );
+        mapPrevious.put( "jsp/admin/plugins/test/Manage.jsp", "manage" );
+        mapPrevious.put( "jsp/admin/plugins/test/Removed.jsp", "removed" );
+        mapPrevious.put( "WEB-INF/conf/plugins/test.properties", "live configuration" );
+        mapPrevious.put( "WEB-INF/sql/plugins/test/create_db_test.sql", "CREATE TABLE test ( id INT );" );
+        File previousZip = writeZip( "plugin-test-1.0.0-webapp.zip", mapPrevious );
+
+        Map<String, String> mapPackage = new LinkedHashMap<>(  );
+        mapPackage.put( "webapp/jsp/admin/plugins/test/Manage.jsp", "manage" );
+        mapPackage.put( "webapp/jsp/admin/plugins/test/Added.jsp", "added" );
+        mapPackage.put( "webapp/WEB-INF/lib/plugin-test-1.1.0.jar", "classes 1.1.0" );
+        mapPackage.put( "webapp/WEB-INF/lib/library-1.0.jar", "library 1.0" );
+        mapPackage.put( "webapp/WEB-INF/lib/other-2.0.jar", "other 2.0" );
+        mapPackage.put( "sql/update_db_test-1.0.0-1.1.0.sql", "ALTER TABLE test ADD name VARCHAR(50);" );
+        File packageZip = writeZip( "plugin-test-upd-upgrade-1.0.0-1.1.0.zip.full", mapPackage );
+
+        ArchiveDelta delta = new ArchiveDelta( previousZip, "webapp/", "WEB-INF/sql/", "WEB-INF/sql-translated/",
+                "WEB-INF/conf/" );
+        delta.addPreviousFiles( "WEB-INF/lib/",
+            Arrays.asList( writeFile( "plugin-test-1.0.0.jar", "classes 1.0.0" ), writeFile( "library-1.0.jar", "library 1.0" ),
+                writeFile( "other-1.0.jar", "other 1.0" ), null ) );
+        delta.compare( packageZip );
+
+        // the added JSP, the new plugin jar, the upgraded library and the upgrade script
+        assertEquals( 4, delta.getChangedCount(  ) );
+        assertEquals( Arrays.asList( "webapp/WEB-INF/lib/other-1.0.jar", "webapp/WEB-INF/lib/plugin-test-1.0.0.jar",
+                "webapp/jsp/admin/plugins/test/Removed.jsp" ), delta.getDeletedEntries(  ) );
+    }
+
+    /**
+     * Without the jars of the previous version, every jar is packaged and none is deleted
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testCompareWithoutPreviousJars(  ) throws IOException
+    {
+        File previousZip = writeZip( "plugin-test-1.0.0-webapp.zip",
+                Collections.singletonMap( "jsp/admin/plugins/test/Manage.jsp", "manage" ) );
+        Map<String, String> mapPackage = new LinkedHashMap<>(  );
+        mapPackage.put( "webapp/jsp/admin/plugins/test/Manage.jsp", "manage" );
+        mapPackage.put( "webapp/WEB-INF/lib/plugin-test-1.1.0.jar", "classes 1.1.0" );
+
+        ArchiveDelta delta = new ArchiveDelta( previousZip, "webapp/" );
+        delta.compare( writeZip( "plugin-test-upd-1.1.0.zip.full", mapPackage ) );
+        delta.storeDeletedEntries( _tempDir.resolve( "deleted-files.txt" ).toFile(  ) );
+
+        assertEquals( 1, delta.getChangedCount(  ) );
+        assertEquals( Collections.emptyList(  ), delta.getDeletedEntries(  ) );
+        assertEquals( Collections.emptyList(  ), Files.readAllLines( _tempDir.resolve( "deleted-files.txt" ) ) );
+    }
+
+    /**
+     * Writes a zip
+     * @param strName The name of the zip
+     * @param mapEntries The content of the entries, by name
+     * @return The zip
+     * @throws IOException if the zip could not be written
+     */
+    private File writeZip( String strName, Map<String, String> mapEntries ) throws IOException
+    {
+        Path zip = _tempDir.resolve( strName );
+
+        try ( OutputStream out = Files.newOutputStream( zip ); ZipOutputStream zipOut = new ZipOutputStream( out ) )
+        {
+            for ( Map.Entry<String, String> entry : mapEntries.entrySet(  ) )
+            {
+                zipOut.putNextEntry( new ZipEntry( entry.getKey(  ) ) );
+                zipOut.write( entry.getValue(  ).getBytes( StandardCharsets.UTF_8 ) );
+                zipOut.closeEntry(  );
+            }
+        }
+
+        return zip.toFile(  );
+    }
+
+    /**
+     * Writes a file
+     * @param strName The name of the file
+     * @param strContent The content of the file
+     * @return The file
+     * @throws IOException if the file could not be written
+     */
+    private File writeFile( String strName, String strContent ) throws IOException
+    {
+        Path file = _tempDir.resolve( strName );
+        Files.write( file, strContent.getBytes( StandardCharsets.UTF_8 ) );
+
+        return file.toFile(  );
+    }
+}
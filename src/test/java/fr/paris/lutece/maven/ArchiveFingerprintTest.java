@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ArchiveFingerprint tests
+ */
+public class ArchiveFingerprintTest
+{
+    @TempDir
+    Path _tempDir;
+
+    /**
+     * The files of a directory are fingerprinted on their content : rewriting
+     * a file unchanged keeps the fingerprint, changing or adding a file does not
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testAddFile(  ) throws IOException
+    {
+        Path directory = _tempDir.resolve( "webapp" );
+        Files.createDirectories( directory.resolve( "WEB-INF" ) );
+        Path file = directory.resolve( "WEB-INF/web.xml" );
+        Files.write( file, "<web-app/>".getBytes( StandardCharsets.UTF_8 ) );
+        String strValue = new ArchiveFingerprint(  ).addFile( directory.toFile(  ) ).getValue(  );
+
+        Files.write( file, "<web-app/>".getBytes( StandardCharsets.UTF_8 ) );
+        assertEquals( strValue, new ArchiveFingerprint(  ).addFile( directory.toFile(  ) ).getValue(  ) );
+
+        Files.write( file, "<web-app></web-app>".getBytes( StandardCharsets.UTF_8 ) );
+        String strChanged = new ArchiveFingerprint(  ).addFile( directory.toFile(  ) ).getValue(  );
+        assertNotEquals( strValue, strChanged );
+
+        Files.write( directory.resolve( "index.html" ), new byte[0] );
+        assertNotEquals( strChanged, new ArchiveFingerprint(  ).addFile( directory.toFile(  ) ).getValue(  ) );
+
+        // a missing file is an input too
+        assertNotEquals( new ArchiveFingerprint(  ).getValue(  ),
+            new ArchiveFingerprint(  ).addFile( _tempDir.resolve( "missing" ).toFile(  ) ).getValue(  ) );
+    }
+
+    /**
+     * The configuration values are part of the fingerprint
+     */
+    @Test
+    public void testAddValue(  )
+    {
+        assertEquals( new ArchiveFingerprint(  ).addValue( "layers", true ).getValue(  ),
+            new ArchiveFingerprint(  ).addValue( "layers", true ).getValue(  ) );
+        assertNotEquals( new ArchiveFingerprint(  ).addValue( "layers", true ).getValue(  ),
+            new ArchiveFingerprint(  ).addValue( "layers", false ).getValue(  ) );
+    }
+
+    /**
+     * The resolved artifacts are fingerprinted whatever their order, on their
+     * version and on their file
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testAddArtifacts(  ) throws IOException
+    {
+        Artifact core = getArtifact( "lutece-core", "7.0.0" );
+        Artifact plugin = getArtifact( "plugin-test", "1.0.0" );
+        String strValue = new ArchiveFingerprint(  ).addArtifacts( Arrays.asList( core, plugin ) ).getValue(  );
+        assertEquals( strValue, new ArchiveFingerprint(  ).addArtifacts( Arrays.asList( plugin, core ) ).getValue(  ) );
+        assertNotEquals( strValue,
+            new ArchiveFingerprint(  ).addArtifacts( Arrays.asList( core, getArtifact( "plugin-test", "1.0.1" ) ) ).getValue(  ) );
+        assertNotEquals( strValue, new ArchiveFingerprint(  ).addArtifacts( Collections.singletonList( core ) ).getValue(  ) );
+
+        // a snapshot resolved again to another file
+        Path jar = _tempDir.resolve( "plugin-test.jar" );
+        Files.write( jar, new byte[] { 1 } );
+        plugin.setFile( jar.toFile(  ) );
+        String strResolved = new ArchiveFingerprint(  ).addArtifacts( Arrays.asList( core, plugin ) ).getValue(  );
+        Files.write( jar, new byte[] { 1, 2 } );
+        assertNotEquals( strResolved, new ArchiveFingerprint(  ).addArtifacts( Arrays.asList( core, plugin ) ).getValue(  ) );
+    }
+
+    /**
+     * The archives are up to date only if the fingerprint did not change and
+     * the archives stored with it were not modified
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testIsUpToDate(  ) throws IOException
+    {
+        File stateFile = _tempDir.resolve( "target/test.war.fingerprint" ).toFile(  );
+        File war = _tempDir.resolve( "test.war" ).toFile(  );
+        Files.write( war.toPath(  ), new byte[] { 1 } );
+        List<File> listOutputs = Collections.singletonList( war );
+
+        ArchiveFingerprint fingerprint = new ArchiveFingerprint(  ).addValue( "project", "test" );
+        assertFalse( fingerprint.isUpToDate( stateFile, listOutputs ) );
+        fingerprint.store( stateFile, listOutputs );
+        assertTrue( new ArchiveFingerprint(  ).addValue( "project", "test" ).isUpToDate( stateFile, listOutputs ) );
+        assertFalse( new ArchiveFingerprint(  ).addValue( "project", "other" ).isUpToDate( stateFile, listOutputs ) );
+
+        // another set of archives
+        File vendorWar = _tempDir.resolve( "test-oracle.war" ).toFile(  );
+        Files.write( vendorWar.toPath(  ), new byte[] { 1 } );
+        assertFalse( new ArchiveFingerprint(  ).addValue( "project", "test" )
+                                               .isUpToDate( stateFile, Arrays.asList( war, vendorWar ) ) );
+
+        // a modified or deleted archive
+        Files.write( war.toPath(  ), new byte[] { 1, 2 } );
+        assertFalse( new ArchiveFingerprint(  ).addValue( "project", "test" ).isUpToDate( stateFile, listOutputs ) );
+        Files.delete( war.toPath(  ) );
+        assertFalse( new ArchiveFingerprint(  ).addValue( "project", "test" ).isUpToDate( stateFile, listOutputs ) );
+    }
+
+    /**
+     * Returns a resolved artifact without file
+     * @param strArtifactId The artifact id
+     * @param strVersion The version
+     * @return The artifact
+     */
+    private static Artifact getArtifact( String strArtifactId, String strVersion )
+    {
+        return new DefaultArtifact( "fr.paris.lutece", strArtifactId, strVersion, Artifact.SCOPE_COMPILE, "jar", null,
+            new DefaultArtifactHandler( "jar" ) );
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * FileUtils tests
+ */
+public class FileUtilsTest
+{
+    @TempDir
+    Path _tempDir;
+
+    /**
+     * The destinations without a line filter are byte copies of the source,
+     * whatever the number of destinations
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testCopyFileWithLineFilters(  ) throws IOException
+    {
+        // a latin-1 script with windows line endings
+        byte[] source = "INSERT INTO t VALUES ( 'caf\u00e9' );\r\nSELECT 1;\r\n".getBytes( StandardCharsets.ISO_8859_1 );
+        Path sourceFile = _tempDir.resolve( "source.sql" );
+        Files.write( sourceFile, source );
+
+        Path mainFile = _tempDir.resolve( "main.sql" );
+        Path upperFile = _tempDir.resolve( "upper.sql" );
+        Path lowerFile = _tempDir.resolve( "lower.sql" );
+
+        Map<Path, Function<String, String>> destinations = new LinkedHashMap<>(  );
+        destinations.put( mainFile, null );
+        FileUtils.copyFileWithLineFilters( sourceFile, destinations );
+        assertArrayEquals( source, Files.readAllBytes( mainFile ) );
+
+        // the filtered destinations are written from a UTF-8 source
+        Path asciiFile = _tempDir.resolve( "ascii.sql" );
+        Files.write( asciiFile, "INSERT INTO t VALUES ( 1 );\r\n".getBytes( StandardCharsets.US_ASCII ) );
+        destinations.put( upperFile, String::toUpperCase );
+        destinations.put( lowerFile, String::toLowerCase );
+        FileUtils.copyFileWithLineFilters( asciiFile, destinations );
+        assertArrayEquals( Files.readAllBytes( asciiFile ), Files.readAllBytes( mainFile ) );
+        assertEquals( "INSERT INTO T VALUES ( 1 );\n", new String( Files.readAllBytes( upperFile ), StandardCharsets.UTF_8 ) );
+        assertEquals( "insert into t values ( 1 );\n", new String( Files.readAllBytes( lowerFile ), StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * The replacement file keeps the permissions of the replaced file,
+     * or of the source file for a new destination
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testCreateReplacementFile(  ) throws IOException
+    {
+        if ( !Files.getFileStore( _tempDir ).supportsFileAttributeView( PosixFileAttributeView.class ) )
+        {
+            return;
+        }
+
+        Path sourceFile = _tempDir.resolve( "source.sql" );
+        Files.write( sourceFile, new byte[0] );
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString( "rw-r--r--" );
+        Files.setPosixFilePermissions( sourceFile, permissions );
+
+        Path tempFile = FileUtils.createReplacementFile( sourceFile, sourceFile );
+        assertEquals( _tempDir, tempFile.getParent(  ) );
+        assertEquals( permissions, Files.getPosixFilePermissions( tempFile ) );
+
+        Path destinationFile = _tempDir.resolve( "destination.sql" );
+        tempFile = FileUtils.createReplacementFile( sourceFile, destinationFile );
+        assertEquals( permissions, Files.getPosixFilePermissions( tempFile ) );
+
+        Files.write( destinationFile, new byte[0] );
+        Set<PosixFilePermission> destinationPermissions = PosixFilePermissions.fromString( "rw-rw-r--" );
+        Files.setPosixFilePermissions( destinationFile, destinationPermissions );
+        tempFile = FileUtils.createReplacementFile( sourceFile, destinationFile );
+        assertEquals( destinationPermissions, Files.getPosixFilePermissions( tempFile ) );
+    }
+}
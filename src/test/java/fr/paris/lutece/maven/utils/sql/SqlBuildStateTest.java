@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SqlBuildState tests
+ */
+public class SqlBuildStateTest
+{
+    @TempDir
+    Path _tempDir;
+
+    /**
+     * An unchanged source is up to date only while all its outputs exist
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testNeedsUpdateChecksEveryOutput(  ) throws IOException
+    {
+        File source = write( "src/create_db_test.sql", "CREATE TABLE t ( id INT );" );
+        File main = write( "out/create_db_test.sql", "" );
+        File vendor = _tempDir.resolve( "oracle/create_db_test.sql" ).toFile(  );
+        File stateFile = _tempDir.resolve( "state.properties" ).toFile(  );
+
+        SqlBuildState state = SqlBuildState.load( stateFile );
+        assertTrue( state.needsUpdate( "create_db_test.sql", source, main, vendor ) );
+        state.store(  );
+
+        // the vendor output was never written
+        state = SqlBuildState.load( stateFile );
+        assertTrue( state.needsUpdate( "create_db_test.sql", source, main, vendor ) );
+
+        write( "oracle/create_db_test.sql", "" );
+        state = SqlBuildState.load( stateFile );
+        assertFalse( state.needsUpdate( "create_db_test.sql", source, main, vendor ) );
+        assertEquals( 1, state.getUpToDateCount(  ) );
+
+        Files.delete( vendor.toPath(  ) );
+        state = SqlBuildState.load( stateFile );
+        assertTrue( state.needsUpdate( "create_db_test.sql", source, main, vendor ) );
+    }
+
+    /**
+     * A changed source has to be written again
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testNeedsUpdateOnChangedSource(  ) throws IOException
+    {
+        File source = write( "src/a.sql", "INSERT INTO t VALUES ( 1 );" );
+        File target = write( "out/a.sql", "" );
+        File stateFile = _tempDir.resolve( "state.properties" ).toFile(  );
+
+        SqlBuildState state = SqlBuildState.load( stateFile );
+        state.needsUpdate( "a.sql", source, target );
+        state.store(  );
+
+        write( "src/a.sql", "INSERT INTO t VALUES ( 2 );" );
+        assertTrue( SqlBuildState.load( stateFile ).needsUpdate( "a.sql", source, target ) );
+    }
+
+    /**
+     * Settings changes and deleted sources reset or prune the state
+     * @throws IOException if a file could not be written
+     */
+    @Test
+    public void testResetAndStalePaths(  ) throws IOException
+    {
+        File source = write( "src/a.sql", "SELECT 1;" );
+        File target = write( "out/a.sql", "" );
+        File stateFile = _tempDir.resolve( "state.properties" ).toFile(  );
+
+        SqlBuildState state = SqlBuildState.load( stateFile );
+        state.reset( "mysql", "hash" );
+        state.needsUpdate( "a.sql", source, target );
+        state.needsUpdate( "b.sql", source, target );
+        state.store(  );
+
+        state = SqlBuildState.load( stateFile );
+        assertTrue( state.isCompatible( "mysql", "hash" ) );
+        assertFalse( state.isCompatible( "oracle", "hash" ) );
+        state.needsUpdate( "a.sql", source, target );
+        assertEquals( Arrays.asList( "b.sql" ), state.removeStalePaths(  ) );
+    }
+
+    /**
+     * Writes a file of the temporary directory
+     * @param strPath The relative path
+     * @param strContent The content
+     * @return The file
+     * @throws IOException if the file could not be written
+     */
+    private File write( String strPath, String strContent ) throws IOException
+    {
+        Path path = _tempDir.resolve( strPath );
+        Files.createDirectories( path.getParent(  ) );
+        Files.write( path, strContent.getBytes( "UTF-8" ) );
+
+        return path.toFile(  );
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SqlChangeSetSplitter tests
+ */
+public class SqlChangeSetSplitterTest
+{
+    /**
+     * Splits a script into changesets with the id x
+     * @param splitter The splitter
+     * @param strScript The script
+     * @param nChangeSets The expected number of changesets
+     * @return The changesets
+     * @throws IOException if the script could not be read
+     */
+    private static String split( SqlChangeSetSplitter splitter, String strScript, int nChangeSets )
+        throws IOException
+    {
+        StringWriter writer = new StringWriter(  );
+        assertEquals( nChangeSets,
+            splitter.split( new StringReader( strScript ), writer, "x", strId -> "-- changeset p:" + strId + "\n" ) );
+
+        return writer.toString(  );
+    }
+
+    /**
+     * A splitter without limit is disabled
+     */
+    @Test
+    public void testIsEnabled(  )
+    {
+        assertFalse( new SqlChangeSetSplitter( 0, 0 ).isEnabled(  ) );
+        assertTrue( new SqlChangeSetSplitter( 0, 1000 ).isEnabled(  ) );
+    }
+
+    /**
+     * A new changeset starts on the line following the statement reaching the limit
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testSplitByStatements(  ) throws IOException
+    {
+        SqlChangeSetSplitter splitter = new SqlChangeSetSplitter( 2, 0 );
+        assertEquals( "-- changeset p:x\nA;\nB;\n-- changeset p:x-2\nC;\n", split( splitter, "A;\nB;\nC;\n", 2 ) );
+        // the comment preceding the next statement belongs to the new changeset
+        assertEquals( "-- changeset p:x\nA;\nB;\n-- changeset p:x-2\n-- c\nC;", split( splitter, "A;\nB;\n-- c\nC;", 2 ) );
+        // no empty changeset is written after the last statement
+        assertEquals( "-- changeset p:x\nA;\nB;\n", split( splitter, "A;\nB;\n", 1 ) );
+    }
+
+    /**
+     * Statements on the same line are split by a line terminator
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testSplitByBytes(  ) throws IOException
+    {
+        SqlChangeSetSplitter splitter = new SqlChangeSetSplitter( 0, 2 );
+        assertEquals( "-- changeset p:x\nA; \n-- changeset p:x-2\nB;", split( splitter, "A; B;", 2 ) );
+    }
+
+    /**
+     * A script with MySQL backslash escapes is one changeset, the scanner could
+     * end a statement inside a string
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testBackslash(  ) throws IOException
+    {
+        SqlChangeSetSplitter splitter = new SqlChangeSetSplitter( 1, 0 );
+        String strScript = "INSERT INTO t VALUES ( 'it\\'s; ok' );\nINSERT INTO t VALUES ( 'b' );\n";
+        assertEquals( "-- changeset p:x\n" + strScript, split( splitter, strScript, 1 ) );
+        // a backslash in a comment does not prevent the split
+        assertEquals( "-- changeset p:x\n-- C:\\data\nA;\n-- changeset p:x-2\nB;\n", split( splitter, "-- C:\\data\nA;\nB;\n", 2 ) );
+    }
+
+    /**
+     * A script with a procedure or trigger body is one changeset
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testBlock(  ) throws IOException
+    {
+        SqlChangeSetSplitter splitter = new SqlChangeSetSplitter( 1, 0 );
+        String strScript = "CREATE TRIGGER tr BEFORE INSERT ON t FOR EACH ROW\nBEGIN\n  SET NEW.a = 1;\n  SET NEW.b = 2;\nEND;\nA;\n";
+        assertEquals( "-- changeset p:x\n" + strScript, split( splitter, strScript, 1 ) );
+        strScript = "CREATE FUNCTION f() RETURNS INT AS $$ SELECT 1; $$ LANGUAGE sql;\nA;\n";
+        assertEquals( "-- changeset p:x\n" + strScript, split( splitter, strScript, 1 ) );
+    }
+
+    /**
+     * A script changing the delimiter is one changeset
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testDelimiter(  ) throws IOException
+    {
+        SqlChangeSetSplitter splitter = new SqlChangeSetSplitter( 1, 0 );
+        String strScript = "DELIMITER //\nCREATE PROCEDURE p() SELECT 1; SELECT 2 //\nDELIMITER ;\nA;\n";
+        assertEquals( "-- changeset p:x\n" + strScript, split( splitter, strScript, 1 ) );
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SqlDependencyAnalyzer tests
+ */
+public class SqlDependencyAnalyzerTest
+{
+    /**
+     * Units using the tables of another unit run in a later batch
+     * @throws IOException if a script could not be read
+     */
+    @Test
+    public void testGetBatches(  ) throws IOException
+    {
+        SqlDependencyAnalyzer analyzer = new SqlDependencyAnalyzer(  );
+        analyzer.analyze( "core", new StringReader( "CREATE TABLE core_user ( id INT );\nINSERT INTO core_user VALUES ( 1 );" ) );
+        analyzer.analyze( "a", new StringReader( "CREATE TABLE a_t ( id INT, CONSTRAINT fk FOREIGN KEY ( id ) REFERENCES `core_user` ( id ) );" ) );
+        analyzer.analyze( "b", new StringReader( "CREATE TABLE IF NOT EXISTS b_t ( id INT );" ) );
+        analyzer.analyze( "c", new StringReader( "insert into CORE_USER values ( 2 );" ) );
+
+        assertEquals( Arrays.asList( Arrays.asList( "core", "b" ), Arrays.asList( "a", "c" ) ), analyzer.getBatches(  ) );
+    }
+
+    /**
+     * A unit altering a table written by a previous unit runs after it
+     * @throws IOException if a script could not be read
+     */
+    @Test
+    public void testConflicts(  ) throws IOException
+    {
+        SqlDependencyAnalyzer analyzer = new SqlDependencyAnalyzer(  );
+        analyzer.analyze( "core", new StringReader( "CREATE TABLE core_user ( id INT );" ) );
+        analyzer.analyze( "a", new StringReader( "INSERT INTO core_user VALUES ( 1 );" ) );
+        analyzer.analyze( "b", new StringReader( "INSERT INTO core_user VALUES ( 2 );" ) );
+        analyzer.analyze( "c", new StringReader( "DELETE FROM core_user WHERE id = 1;" ) );
+
+        // concurrent inserts are allowed
+        assertEquals( Arrays.asList( Arrays.asList( "core" ), Arrays.asList( "a", "b" ), Arrays.asList( "c" ) ),
+            analyzer.getBatches(  ) );
+    }
+}
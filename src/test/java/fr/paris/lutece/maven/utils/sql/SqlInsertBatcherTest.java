@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SqlInsertBatcher tests
+ */
+public class SqlInsertBatcherTest
+{
+    @TempDir
+    Path _tempDir;
+
+    /**
+     * Merges the statements of a script
+     * @param batcher The batcher
+     * @param strScript The script
+     * @return The merged script
+     * @throws IOException if the script could not be written
+     */
+    private String batch( SqlInsertBatcher batcher, String strScript ) throws IOException
+    {
+        Path file = _tempDir.resolve( "script.sql" );
+        Files.write( file, strScript.getBytes( StandardCharsets.UTF_8 ) );
+        batcher.batchFile( file );
+
+        return new String( Files.readAllBytes( file ), StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Oracle and unknown vendors get no batcher
+     */
+    @Test
+    public void testForVendor(  )
+    {
+        assertNull( SqlInsertBatcher.forVendor( "oracle", 100 ) );
+        assertNull( SqlInsertBatcher.forVendor( null, 100 ) );
+        assertNull( SqlInsertBatcher.forVendor( "mysql", 1 ) );
+        assertNotNull( SqlInsertBatcher.forVendor( "postgresql", 100 ) );
+    }
+
+    /**
+     * Consecutive inserts on the same table and columns are merged, up to the batch size
+     * @throws IOException if the script could not be written
+     */
+    @Test
+    public void testBatchFile(  ) throws IOException
+    {
+        SqlInsertBatcher batcher = new SqlInsertBatcher( 2, Integer.MAX_VALUE );
+        assertEquals( "INSERT INTO t (a) VALUES\n(1),\n(2);\nINSERT INTO t (a) VALUES (3);\nINSERT INTO u VALUES (4);\n",
+            batch( batcher,
+                "INSERT INTO t (a) VALUES (1);\ninsert into t (a) values (2);\nINSERT INTO t (a) VALUES (3);\nINSERT INTO u VALUES (4);\n" ) );
+    }
+
+    /**
+     * Comments end a batch, multi-row inserts and escaped strings are left alone
+     * @throws IOException if the script could not be written
+     */
+    @Test
+    public void testBatchBoundaries(  ) throws IOException
+    {
+        SqlInsertBatcher batcher = new SqlInsertBatcher( 10, Integer.MAX_VALUE );
+        String strScript = "INSERT INTO t VALUES (1);\n-- changeset core:2\nINSERT INTO t VALUES (2);\n" +
+            "INSERT INTO t VALUES (3), (4);\nINSERT INTO t VALUES ('a\\'b');\n";
+        assertEquals( strScript, batch( batcher, strScript ) );
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * SqlSchemaAdvisor tests
+ */
+public class SqlSchemaAdvisorTest
+{
+    private static final String CREATE_SCRIPT = "CREATE TABLE a (\n" +
+        "  id_a INT NOT NULL, id_b INT, name VARCHAR(50),\n" +
+        "  PRIMARY KEY (id_a),\n" +
+        "  FOREIGN KEY (id_b) REFERENCES b (id_b)\n" +
+        ") ENGINE=MyISAM;\n" +
+        "CREATE TABLE b ( id_b INT PRIMARY KEY, id_user INT );\n" +
+        "-- no key ( id_c ) here\n" +
+        "CREATE TABLE c ( label VARCHAR(10) );\n";
+
+    @TempDir
+    Path _tempDir;
+
+    /**
+     * Missing keys and indexes are reported table by table
+     * @throws IOException if a script could not be read
+     */
+    @Test
+    public void testGetFindings(  ) throws IOException
+    {
+        SqlSchemaAdvisor advisor = new SqlSchemaAdvisor(  );
+        advisor.analyze( "create_db.sql", new StringReader( CREATE_SCRIPT ) );
+
+        assertEquals( Arrays.asList( "create_db.sql : a : MyISAM engine, use InnoDB", "create_db.sql : a : foreign key (id_b) without index",
+                "create_db.sql : b : column id_user without index", "create_db.sql : c : no primary key" ), advisor.getFindings(  ) );
+    }
+
+    /**
+     * The indexes and keys added by the following scripts are taken into account
+     * @throws IOException if a script could not be read
+     */
+    @Test
+    public void testUpgradeScripts(  ) throws IOException
+    {
+        SqlSchemaAdvisor advisor = new SqlSchemaAdvisor(  );
+        advisor.analyze( "create_db.sql", new StringReader( CREATE_SCRIPT ) );
+        advisor.analyze( "update_db.sql",
+            new StringReader( "CREATE INDEX idx_user ON b ( id_user );\nALTER TABLE c ADD PRIMARY KEY (label);\nDROP TABLE IF EXISTS a;\n" ) );
+
+        assertEquals( Collections.emptyList(  ), advisor.getFindings(  ) );
+    }
+
+    /**
+     * The report holds a summary followed by the findings
+     * @throws IOException if the report could not be written
+     */
+    @Test
+    public void testStore(  ) throws IOException
+    {
+        SqlSchemaAdvisor advisor = new SqlSchemaAdvisor(  );
+        advisor.analyze( "create_db.sql", new StringReader( "CREATE TABLE c ( label VARCHAR(10) );" ) );
+        File report = _tempDir.resolve( "report/sql-schema-report.txt" ).toFile(  );
+
+        assertEquals( 1, advisor.store( report, "SQL schema of test" ) );
+        assertEquals( Arrays.asList( "SQL schema of test : 1 tables, 1 findings", "create_db.sql : c : no primary key" ),
+            Files.readAllLines( report.toPath(  ), StandardCharsets.UTF_8 ) );
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SqlStatementScanner tests
+ */
+public class SqlStatementScannerTest
+{
+    /**
+     * Scans a script, the statements being prefixed with S: and the text with T:
+     * @param strScript The script
+     * @return The parts of the script
+     * @throws IOException if the script could not be read
+     */
+    private static List<String> scan( String strScript ) throws IOException
+    {
+        List<String> listParts = new ArrayList<>(  );
+        SqlStatementScanner.scan( new StringReader( strScript ), new SqlStatementScanner.Handler(  )
+            {
+                @Override
+                public void statement( String strStatement )
+                {
+                    listParts.add( "S:" + strStatement );
+                }
+
+                @Override
+                public void text( String strText )
+                {
+                    listParts.add( "T:" + strText );
+                }
+            } );
+
+        return listParts;
+    }
+
+    /**
+     * Statements are split at their semicolon, the blanks and comments being text
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testScan(  ) throws IOException
+    {
+        assertEquals( Arrays.asList( "T:-- liquibase formatted sql\n", "S:CREATE TABLE t ( id INT );", "T:\n/* two */\n",
+                "S:INSERT INTO t VALUES ( 1 );", "T:\n" ),
+            scan( "-- liquibase formatted sql\nCREATE TABLE t ( id INT );\n/* two */\nINSERT INTO t VALUES ( 1 );\n" ) );
+    }
+
+    /**
+     * Semicolons in strings, quoted identifiers and comments do not end a statement
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testQuotesAndComments(  ) throws IOException
+    {
+        assertEquals( Arrays.asList( "S:INSERT INTO t VALUES ( 'a;b', \"c;d\", `e;f` /* g; */ );" ),
+            scan( "INSERT INTO t VALUES ( 'a;b', \"c;d\", `e;f` /* g; */ );" ) );
+        assertEquals( Arrays.asList( "S:SELECT 1 -- not; the end\n;" ), scan( "SELECT 1 -- not; the end\n;" ) );
+    }
+
+    /**
+     * An unterminated last statement is text
+     * @throws IOException if the script could not be read
+     */
+    @Test
+    public void testUnterminatedStatement(  ) throws IOException
+    {
+        assertEquals( Arrays.asList( "S:SELECT 1;", "T: ", "T:SELECT 2" ), scan( "SELECT 1; SELECT 2" ) );
+    }
+}
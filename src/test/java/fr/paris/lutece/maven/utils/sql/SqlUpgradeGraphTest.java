@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2002-2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.maven.utils.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SqlUpgradeGraph tests
+ */
+public class SqlUpgradeGraphTest
+{
+    private static final String UPGRADE_DIRECTORY = "sql/plugins/test/upgrade/";
+
+    /**
+     * The shortest path to the latest version is found from each version,
+     * the unreachable versions being gaps
+     */
+    @Test
+    public void testPaths(  )
+    {
+        SqlUpgradeGraph graph = SqlUpgradeGraph.build( Arrays.asList( UPGRADE_DIRECTORY + "update_db_test-1.0.0-1.1.0.sql",
+                    UPGRADE_DIRECTORY + "update_db_test-1.1.0-2.0.0.sql", UPGRADE_DIRECTORY + "update_db_test-1.0.0-2.0.0.sql",
+                    UPGRADE_DIRECTORY + "update_db_test-0.9.0-0.9.5.sql", "sql/plugins/test/plugin/create_db_test.sql" ) );
+
+        assertEquals( "2.0.0", graph.getLatestVersion(  ) );
+
+        Map<String, List<String>> mapPaths = graph.getPaths(  );
+        assertEquals( Arrays.asList( "1.0.0", "1.1.0" ), Arrays.asList( mapPaths.keySet(  ).toArray(  ) ) );
+        assertEquals( Collections.singletonList( UPGRADE_DIRECTORY + "update_db_test-1.0.0-2.0.0.sql" ), mapPaths.get( "1.0.0" ) );
+        assertEquals( Collections.singletonList( UPGRADE_DIRECTORY + "update_db_test-1.1.0-2.0.0.sql" ), mapPaths.get( "1.1.0" ) );
+        assertEquals( Arrays.asList( "0.9.0", "0.9.5" ), graph.getGaps(  ) );
+    }
+
+    /**
+     * The versions are compared numerically
+     */
+    @Test
+    public void testVersionOrder(  )
+    {
+        SqlUpgradeGraph graph = SqlUpgradeGraph.build( Arrays.asList( UPGRADE_DIRECTORY + "update_db_test-1.9.0-1.10.0.sql",
+                    UPGRADE_DIRECTORY + "update_db_test-1.2.0-1.9.0.sql" ) );
+
+        assertEquals( "1.10.0", graph.getLatestVersion(  ) );
+        assertEquals( Arrays.asList( UPGRADE_DIRECTORY + "update_db_test-1.2.0-1.9.0.sql", UPGRADE_DIRECTORY + "update_db_test-1.9.0-1.10.0.sql" ),
+            graph.getPaths(  ).get( "1.2.0" ) );
+    }
+
+    /**
+     * Without upgrade scripts, there is no latest version
+     */
+    @Test
+    public void testNoUpgrade(  )
+    {
+        SqlUpgradeGraph graph = SqlUpgradeGraph.build( Collections.singletonList( "sql/plugins/test/plugin/create_db_test.sql" ) );
+
+        assertNull( graph.getLatestVersion(  ) );
+        assertTrue( graph.getPaths(  ).isEmpty(  ) );
+    }
+}